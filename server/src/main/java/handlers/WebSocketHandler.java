@@ -1,6 +1,11 @@
 package handlers;
 
 import chess.ChessGame;
+import chess.Fen;
+import chess.GameStatus;
+import chess.engine.Engine;
+import chess.engine.SearchLimits;
+import chess.engine.SearchResult;
 import com.google.gson.Gson;
 import dataaccess.DataAccessException;
 import dataaccess.interfaces.AuthDataAccess;
@@ -11,22 +16,39 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import messages.WebSocketMessage;
 import messages.*;
+import service.EngineScheduler;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 
 public class WebSocketHandler {
 
     public enum Role { WHITE, BLACK, SPECTATOR }
     private static final Logger LOGGER = LoggerFactory.getLogger(WebSocketHandler.class);
+    private static final SearchLimits HINT_LIMITS = SearchLimits.millis(1_000);
+    private static final SearchLimits ANALYSIS_LIMITS = SearchLimits.millis(5_000);
 
     private final GameDataAccess gameDao;
     private final AuthDataAccess authDao;
-
-    public WebSocketHandler(GameDataAccess gameDao, AuthDataAccess authDao) {
+    private final EngineScheduler scheduler;
+    private final Engine engine;
+
+    /**
+     * @param engine searches hints and analysis on the scheduler's workers, so it must
+     *               be safe to search with from several threads at once
+     */
+    public WebSocketHandler(GameDataAccess gameDao, AuthDataAccess authDao, EngineScheduler scheduler,
+                            Engine engine) {
         this.gameDao = gameDao;
         this.authDao = authDao;
+        this.scheduler = scheduler;
+        this.engine = engine;
     }
 
     public static class ClientInfo {
@@ -38,32 +60,90 @@ public class WebSocketHandler {
     private final Map<Integer, Set<WsContext>> activeGames = new ConcurrentHashMap<>();
     private final Map<WsContext, Role> gameRoles = new ConcurrentHashMap<>();
     private final Map<WsContext, ClientInfo> gameUsers = new ConcurrentHashMap<>();
+    /**
+     * Games that were resigned. A game that ended on the board is not kept here, since
+     * the stored game already says so.
+     */
     private final Map<Integer, Boolean> finishedGames = new ConcurrentHashMap<>();
 
+    /**
+     * One search per position and kind, shared by everyone who asked for it while it
+     * runs. Guarded by itself.
+     */
+    private final Map<AnalysisKey, Analysis> analyses = new HashMap<>();
+
+    private record AnalysisKey(long positionKey, EngineScheduler.Lane lane) {}
+
+    private static class Analysis {
+        final String fen;
+        final Set<WsContext> subscribers = ConcurrentHashMap.newKeySet();
+        volatile AnalysisMessage latest;
+        EngineScheduler.Job job;
+
+        Analysis(String fen) {
+            this.fen = fen;
+        }
+    }
+
     private void sendError(WsContext ctx, String error) {
         ctx.send(new Gson().toJson(new ErrorMessage(error)));
     }
 
     public boolean ggChecker(ChessGame chess) {
-        ChessGame.TeamColor currentTeam = chess.getTeamTurn();
-        return chess.isInCheckmate(currentTeam) || chess.isInStalemate(currentTeam);
+        return chess.getGameStatus().isOver();
     }
 
     public void ggMessage(int gameId, ChessGame chess) {
+        notificationEveryone(gameId, ggNotification(chess));
+    }
+
+    private static NotificationMessage ggNotification(ChessGame chess) {
+        GameStatus status = chess.getGameStatus();
         String message;
-        if (chess.isInCheckmate(ChessGame.TeamColor.WHITE)) {
+        if (status.state() == GameStatus.State.CHECKMATE && status.winner() == ChessGame.TeamColor.BLACK) {
             message = "Great Enemy Felled: WHITE, Congratulations Tarnished: Black";
-        } else if (chess.isInCheckmate(ChessGame.TeamColor.BLACK)) {
+        } else if (status.state() == GameStatus.State.CHECKMATE) {
             message = "Great Enemy Felled: BLACK, Congratulations Tarnished: WHITE";
+        } else if (status.state() == GameStatus.State.THREEFOLD_REPETITION) {
+            message = "A Great Display of Equal Skill: Draw by Threefold Repetition";
+        } else if (status.state() == GameStatus.State.FIFTY_MOVE_RULE) {
+            message = "A Great Display of Equal Skill: Draw by the Fifty-Move Rule";
+        } else if (status.state() == GameStatus.State.INSUFFICIENT_MATERIAL) {
+            message = "A Great Display of Equal Skill: Draw by Insufficient Material";
         } else {
             message = "A Great Display of Equal Skill: Stalemate";
         }
 
-        NotificationMessage ggWp = new NotificationMessage(
+        return new NotificationMessage(
                 ServerMessage.ServerMessageType.NOTIFICATION,
                 message
         );
-        notificationEveryone(gameId, ggWp);
+    }
+
+    /**
+     * Forgets a game that ended on the board along with everyone in it, and stops any
+     * analysis they asked for. Their sockets stay open, so a late command still gets an
+     * error back; anyone who connects later is told from the stored game.
+     */
+    private void evict(int gameId) {
+        Set<WsContext> clients = activeGames.remove(gameId);
+        if (clients == null) {return;}
+        for (WsContext ctx : clients) {
+            gameRoles.remove(ctx);
+            gameUsers.remove(ctx);
+            unsubscribe(ctx);
+        }
+    }
+
+    /**
+     * Takes a client out of its game, and the game out of {@code activeGames} once
+     * nobody is left in it.
+     */
+    private void removeFromGame(int gameId, WsContext ctx) {
+        activeGames.computeIfPresent(gameId, (id, clients) -> {
+            clients.remove(ctx);
+            return clients.isEmpty() ? null : clients;
+        });
     }
 
     public void notificationExclude(int gameId, Object msg, WsContext exclude) {
@@ -104,14 +184,18 @@ public class WebSocketHandler {
 
         String username = auth.getUsername();
 
+        if (ggChecker(game.getGame())) {
+            ctx.send(new Gson().toJson(new LoadGameMessage(game)));
+            ctx.send(new Gson().toJson(ggNotification(game.getGame())));
+            return;
+        }
+
         ClientInfo info = new ClientInfo();
         info.authToken = token;
         info.username = username;
         info.gameId = gameId;
         gameUsers.put(ctx, info);
 
-        activeGames.putIfAbsent(gameId, ConcurrentHashMap.newKeySet());
-
         String whiteUser = game.getWhiteUsername();
         String blackUser = game.getBlackUsername();
 
@@ -123,7 +207,11 @@ public class WebSocketHandler {
                         Role.SPECTATOR;
 
         gameRoles.put(ctx, assigned);
-        activeGames.get(gameId).add(ctx);
+        activeGames.compute(gameId, (id, clients) -> {
+            if (clients == null) {clients = ConcurrentHashMap.newKeySet();}
+            clients.add(ctx);
+            return clients;
+        });
 
         ctx.send(new Gson().toJson(new LoadGameMessage(game)));
 
@@ -141,9 +229,10 @@ public class WebSocketHandler {
         int gameId = info.gameId;
         String username = info.username;
 
-        activeGames.getOrDefault(gameId, Set.of()).remove(ctx);
+        removeFromGame(gameId, ctx);
         gameRoles.remove(ctx);
         gameUsers.remove(ctx);
+        unsubscribe(ctx);
 
         GameData game = gameDao.getGame(gameId);
 
@@ -185,6 +274,10 @@ public class WebSocketHandler {
         }
 
         ChessGame chess = game.getGame();
+        if (ggChecker(chess)) {
+            sendError(ctx, "Game is already over");
+            return;
+        }
         ClientInfo info = gameUsers.get(ctx);
 
         if (info == null || info.gameId != gameId) {
@@ -234,6 +327,7 @@ public class WebSocketHandler {
             notificationEveryone(gameId, new LoadGameMessage(updated));
             notificationExclude(gameId, moveMessage, ctx);
             ggMessage(gameId, chess);
+            evict(gameId);
             return;
         }
         notificationEveryone(gameId, new LoadGameMessage(updated));
@@ -258,6 +352,10 @@ public class WebSocketHandler {
             sendError(ctx, "invalid game id");
             return;
         }
+        if (ggChecker(game.getGame())) {
+            sendError(ctx, "Game is already over");
+            return;
+        }
 
         Role role = gameRoles.get(ctx);
         if (role == Role.SPECTATOR) {
@@ -276,6 +374,99 @@ public class WebSocketHandler {
         notificationEveryone(gameId, resigning);
     }
 
+    /**
+     * Searches the game's current position on the engine pool and streams each deeper
+     * result back as an {@link AnalysisMessage}. A request for a position that is
+     * already being searched joins that search instead of starting another, and gets
+     * the latest result straight away.
+     */
+    public void handleAnalyze(WsContext ctx, WebSocketMessage msg, EngineScheduler.Lane lane)
+            throws DataAccessException {
+        int gameId = msg.gameID;
+
+        var auth = authDao.getAuth(msg.authToken);
+        if (auth == null) {
+            sendError(ctx, "Invalid AuthToken");
+            return;
+        }
+
+        ClientInfo info = gameUsers.get(ctx);
+        if (info == null || info.gameId != gameId) {
+            sendError(ctx, "You are not a part of the game");
+            return;
+        }
+
+        var game = gameDao.getGame(gameId);
+        if (game == null) {
+            sendError(ctx, "Invalid gameId");
+            return;
+        }
+
+        ChessGame chess = game.getGame();
+        if (finishedGames.getOrDefault(gameId, false) || ggChecker(chess)) {
+            sendError(ctx, "Game is already over");
+            return;
+        }
+
+        AnalysisKey key = new AnalysisKey(chess.positionKey(), lane);
+        synchronized (analyses) {
+            Analysis running = analyses.get(key);
+            if (running != null) {
+                running.subscribers.add(ctx);
+                AnalysisMessage latest = running.latest;
+                if (latest != null) {ctx.send(new Gson().toJson(latest));}
+                return;
+            }
+
+            Analysis analysis = new Analysis(Fen.toFen(chess));
+            analysis.subscribers.add(ctx);
+            SearchLimits limits = lane == EngineScheduler.Lane.HINT ? HINT_LIMITS : ANALYSIS_LIMITS;
+            try {
+                analysis.job = scheduler.submit(lane, gameId, ctx.sessionId(), engine, chess, limits,
+                        result -> publish(analysis, result, false));
+            } catch (RejectedExecutionException e) {
+                sendError(ctx, "Engine is busy, try again later");
+                return;
+            }
+            analyses.put(key, analysis);
+            analysis.job.result().whenComplete((result, error) -> {
+                synchronized (analyses) {
+                    analyses.remove(key, analysis);
+                }
+                if (result != null) {publish(analysis, result, true);}
+            });
+        }
+    }
+
+    private void publish(Analysis analysis, SearchResult result, boolean complete) {
+        AnalysisMessage message = new AnalysisMessage(analysis.fen, result, complete);
+        analysis.latest = message;
+        String json = new Gson().toJson(message);
+        for (WsContext ctx : analysis.subscribers) {
+            try { ctx.send(json); }
+            catch (Exception e) { analysis.subscribers.remove(ctx); }
+        }
+    }
+
+    /**
+     * Stops sending analysis to a client, and cancels searches nobody is waiting for
+     * any more.
+     */
+    private void unsubscribe(WsContext ctx) {
+        List<EngineScheduler.Job> abandoned = new ArrayList<>();
+        synchronized (analyses) {
+            Iterator<Analysis> it = analyses.values().iterator();
+            while (it.hasNext()) {
+                Analysis analysis = it.next();
+                if (analysis.subscribers.remove(ctx) && analysis.subscribers.isEmpty()) {
+                    it.remove();
+                    abandoned.add(analysis.job);
+                }
+            }
+        }
+        abandoned.forEach(EngineScheduler.Job::cancel);
+    }
+
     public void connect(WsConnectContext ctx) {
         LOGGER.info("WebSocket CONNECT: " + ctx.sessionId());
     }
@@ -289,6 +480,8 @@ public class WebSocketHandler {
             case "MAKE_MOVE" -> handleMove(ctx, msg);
             case "LEAVE" -> handleLeave(ctx);
             case "RESIGN" -> handleResign(ctx, msg);
+            case "ANALYZE" -> handleAnalyze(ctx, msg, EngineScheduler.Lane.ANALYSIS);
+            case "HINT" -> handleAnalyze(ctx, msg, EngineScheduler.Lane.HINT);
             default -> sendError(ctx, "Unknown command: " + msg.commandType);
         }
     }
@@ -298,8 +491,9 @@ public class WebSocketHandler {
 
         ClientInfo info = gameUsers.remove(ctx);
         if (info != null) {
-            activeGames.getOrDefault(info.gameId, Set.of()).remove(ctx);
+            removeFromGame(info.gameId, ctx);
             gameRoles.remove(ctx);
         }
+        unsubscribe(ctx);
     }
 }
@@ -0,0 +1,34 @@
+package messages;
+
+import chess.ChessMove;
+import chess.engine.Score;
+import chess.engine.SearchResult;
+
+import java.util.List;
+
+public class AnalysisMessage extends ServerMessage {
+
+    public String fen;
+    public ChessMove bestMove;
+    public List<ChessMove> principalVariation;
+    /** Centipawns for the team to move, see {@link Score}; left out for a book move. */
+    public Integer score;
+    /** The score as text, or "book" for a move taken from the opening book. */
+    public String scoreText;
+    public int depth;
+    public long nodes;
+    /** False while the search is still deepening; the last message of a search is complete. */
+    public boolean complete;
+
+    public AnalysisMessage(String fen, SearchResult result, boolean complete) {
+        super(ServerMessageType.ANALYSIS);
+        this.fen = fen;
+        this.bestMove = result.bestMove();
+        this.principalVariation = result.principalVariation();
+        this.score = result.book() ? null : result.score();
+        this.scoreText = result.book() ? "book" : Score.toString(result.score());
+        this.depth = result.depth();
+        this.nodes = result.nodes();
+        this.complete = complete;
+    }
+}
@@ -7,7 +7,8 @@ public class ServerMessage {
         ERROR,
         NOTIFICATION,
         PLAYER_JOINED,
-        PLAYER_LEFT
+        PLAYER_LEFT,
+        ANALYSIS
     }
 
     public ServerMessageType serverMessageType;
@@ -1,5 +1,13 @@
 package server;
 
+import chess.engine.AlphaBetaEngine;
+import chess.engine.BookEngine;
+import chess.engine.Engine;
+import chess.engine.OpeningBook;
+import chess.engine.SearchConfig;
+import chess.engine.TranspositionTable;
+import chess.eval.TaperedEvaluator;
+import chess.tablebase.Tablebase;
 import dataaccess.DataAccessException;
 import dataaccess.DatabaseManager;
 import dataaccess.memory.MemoryAuthDao;
@@ -14,13 +22,25 @@ import dataaccess.interfaces.UserDataAccess;
 import handlers.*;
 import io.javalin.*;
 import io.javalin.json.JavalinGson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import service.EngineScheduler;
 import service.GameService;
 import service.UserService;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 
 
 public class Server {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(Server.class);
+    /** Opening book file for hints and analysis, optional. */
+    public static final String BOOK_PROPERTY = "chess.book";
+    /** Directory of endgame table files for hints and analysis, optional. */
+    public static final String TABLEBASE_PROPERTY = "chess.tablebases";
+    private static final int ENGINE_TABLE_MEGABYTES = 64;
 
     private final Javalin javalin;
     private final RegistrationHandler registrationHandler;
@@ -30,6 +50,7 @@ public class Server {
     private final CreateGameHandler createGameHandler;
     private final JoinGameHandler joinGameHandler;
     private final ListGamesHandler listGamesHandler;
+    private final EngineScheduler engineScheduler;
 
 
     public Server() {
@@ -67,7 +88,9 @@ public class Server {
             .delete("/db", databaseHandler::clearDB)
             .post("/user", registrationHandler::handleRegistration);
 
-        WebSocketHandler wsHandler = new WebSocketHandler(gameDao, authDao);
+        // Engine searches get half the cores, so the rest stay free for requests
+        this.engineScheduler = new EngineScheduler(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        WebSocketHandler wsHandler = new WebSocketHandler(gameDao, authDao, engineScheduler, createEngine());
 
         javalin.ws("/ws", ws -> {
             ws.onConnect(wsHandler::connect);
@@ -76,6 +99,35 @@ public class Server {
         });
     }
 
+    /**
+     * Alpha-beta search probing the endgame tables named by {@value #TABLEBASE_PROPERTY},
+     * behind the opening book named by {@value #BOOK_PROPERTY}. Whichever is not set, or
+     * cannot be read, is left out.
+     */
+    private static Engine createEngine() {
+        Tablebase tablebase = Tablebase.NONE;
+        String tables = System.getProperty(TABLEBASE_PROPERTY);
+        if (tables != null) {
+            try {
+                tablebase = Tablebase.open(Path.of(tables));
+            } catch (IOException e) {
+                LOGGER.warn("Searching without endgame tables: " + e.getMessage());
+            }
+        }
+        Engine engine = new AlphaBetaEngine(new TranspositionTable(ENGINE_TABLE_MEGABYTES), TaperedEvaluator::new,
+                SearchConfig.DEFAULT, tablebase);
+
+        String book = System.getProperty(BOOK_PROPERTY);
+        if (book != null) {
+            try {
+                return new BookEngine(OpeningBook.open(Path.of(book)), engine, OpeningBook.Selection.BEST);
+            } catch (IOException e) {
+                LOGGER.warn("Searching without an opening book: " + e.getMessage());
+            }
+        }
+        return engine;
+    }
+
     public int run(int desiredPort) {
         javalin.start(desiredPort);
         return javalin.port();
@@ -83,5 +135,6 @@ public class Server {
 
     public void stop() {
         javalin.stop();
+        engineScheduler.close();
     }
 }
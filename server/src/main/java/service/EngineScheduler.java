@@ -0,0 +1,405 @@
+package service;
+
+import chess.ChessGame;
+import chess.engine.Engine;
+import chess.engine.SearchLimits;
+import chess.engine.SearchListener;
+import chess.engine.SearchResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Runs engine searches for every game on a fixed number of worker threads, so bots,
+ * hints and analysis never search on a socket thread and never use more cores than
+ * the server sets aside for them.
+ * <p>
+ * Waiting searches are kept in one lane per {@link Lane}, and a free worker always
+ * takes from the most urgent lane that has work. Within a lane games take turns: one
+ * search from each game with something waiting, in the order they first asked, so a
+ * game that queues many searches only delays itself. Each lane caps the limits of its
+ * searches, and a game may only have a few searches waiting per lane.
+ * <p>
+ * A search can be cancelled while it waits or while it runs; a running search is
+ * told to stop through its stop flag. Searches are tagged with an owner, such as a
+ * websocket session, so everything it asked for can be cancelled when it goes away.
+ */
+public class EngineScheduler implements AutoCloseable {
+
+    /**
+     * Kinds of search, most urgent first.
+     */
+    public enum Lane {
+        BOT_MOVE,
+        HINT,
+        ANALYSIS
+    }
+
+    public static final int DEFAULT_CAPACITY = 256;
+    public static final int DEFAULT_PER_GAME = 4;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EngineScheduler.class);
+
+    private final int capacity;
+    private final int perGame;
+    private final Map<Lane, SearchLimits> budgets;
+    private final Map<Lane, LaneQueue> queues = new EnumMap<>(Lane.class);
+    private final Set<Job> running = new HashSet<>();
+    private int queued;
+    private boolean closed;
+
+    public EngineScheduler(int workers) {
+        this(workers, DEFAULT_CAPACITY, DEFAULT_PER_GAME, defaultBudgets());
+    }
+
+    /**
+     * @param workers  searches that run at once
+     * @param capacity searches that may wait across all lanes
+     * @param perGame  searches one game may have waiting in each lane
+     * @param budgets  the most each lane's searches may use; a lane without an entry is
+     *                 not capped
+     */
+    public EngineScheduler(int workers, int capacity, int perGame, Map<Lane, SearchLimits> budgets) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Need at least one worker: " + workers);
+        }
+        this.capacity = capacity;
+        this.perGame = perGame;
+        this.budgets = new EnumMap<>(Lane.class);
+        this.budgets.putAll(budgets);
+        for (Lane lane : Lane.values()) {
+            queues.put(lane, new LaneQueue());
+        }
+        for (int i = 0; i < workers; i++) {
+            Thread thread = new Thread(this::work, "engine-worker-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Bot moves may think for five seconds, hints for two and analysis for ten.
+     */
+    public static Map<Lane, SearchLimits> defaultBudgets() {
+        Map<Lane, SearchLimits> budgets = new EnumMap<>(Lane.class);
+        budgets.put(Lane.BOT_MOVE, SearchLimits.millis(5_000));
+        budgets.put(Lane.HINT, SearchLimits.millis(2_000));
+        budgets.put(Lane.ANALYSIS, SearchLimits.millis(10_000));
+        return budgets;
+    }
+
+    /**
+     * Queues a search of a snapshot of the game, so moves made while it waits or runs
+     * do not affect it.
+     *
+     * @param owner    who asked, for {@link #cancelOwner(String)}
+     * @param listener told about each iteration on the worker thread, may be null
+     * @throws RejectedExecutionException if the scheduler is closed, full, or the game
+     *                                    already has too many searches waiting in the lane
+     */
+    public synchronized Job submit(Lane lane, int gameId, String owner, Engine engine, ChessGame game,
+                                   SearchLimits limits, SearchListener listener) {
+        LaneQueue queue = queues.get(lane);
+        if (closed || queued >= capacity || queue.waiting(gameId) >= perGame) {
+            queue.rejected++;
+            throw new RejectedExecutionException("Engine queue is full for game " + gameId);
+        }
+        Job job = new Job(lane, gameId, owner, engine, game.copy(), capped(lane, limits), listener);
+        queue.add(job);
+        queued++;
+        notify();
+        return job;
+    }
+
+    /**
+     * Cancels every waiting or running search the owner asked for.
+     *
+     * @return how many searches were cancelled
+     */
+    public int cancelOwner(String owner) {
+        List<Job> jobs = new ArrayList<>();
+        synchronized (this) {
+            for (LaneQueue queue : queues.values()) {
+                queue.forEach(job -> {
+                    if (Objects.equals(job.owner, owner)) {jobs.add(job);}
+                });
+            }
+            for (Job job : running) {
+                if (Objects.equals(job.owner, owner)) {jobs.add(job);}
+            }
+        }
+        jobs.forEach(this::cancel);
+        return jobs.size();
+    }
+
+    public synchronized Metrics metrics() {
+        Map<Lane, LaneMetrics> lanes = new EnumMap<>(Lane.class);
+        for (Lane lane : Lane.values()) {
+            LaneQueue queue = queues.get(lane);
+            lanes.put(lane, new LaneMetrics(queue.size, queue.started, queue.rejected, queue.cancelled,
+                    queue.totalWaitNanos, queue.maxWaitNanos));
+        }
+        return new Metrics(running.size(), lanes);
+    }
+
+    /**
+     * Cancels everything waiting or running and lets the workers finish.
+     */
+    @Override
+    public void close() {
+        List<Job> jobs;
+        synchronized (this) {
+            closed = true;
+            jobs = new ArrayList<>(running);
+            for (LaneQueue queue : queues.values()) {
+                queue.forEach(jobs::add);
+            }
+            notifyAll();
+        }
+        jobs.forEach(this::cancel);
+    }
+
+    /**
+     * The future is cancelled outside the lock, since whatever depends on it runs
+     * right there and may take other locks or submit more work. A search that has
+     * already finished is left alone.
+     */
+    private void cancel(Job job) {
+        synchronized (this) {
+            if (job.cancelled || job.result.isDone()) {return;}
+            job.cancelled = true;
+            job.stop.set(true);
+            LaneQueue queue = queues.get(job.lane);
+            if (queue.remove(job)) {queued--;}
+            queue.cancelled++;
+        }
+        job.result.cancel(false);
+    }
+
+    private SearchLimits capped(Lane lane, SearchLimits limits) {
+        SearchLimits budget = budgets.get(lane);
+        if (budget == null) {return limits;}
+        return new SearchLimits(Math.min(limits.depth(), budget.depth()), tighter(limits.nodes(), budget.nodes()),
+                tighter(limits.millis(), budget.millis()));
+    }
+
+    /**
+     * @return the smaller of two limits where 0 means no limit
+     */
+    private static long tighter(long a, long b) {
+        if (a == 0) {return b;}
+        if (b == 0) {return a;}
+        return Math.min(a, b);
+    }
+
+    private void work() {
+        while (true) {
+            Job job;
+            synchronized (this) {
+                while (!closed && queued == 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {return;}
+                job = take();
+                running.add(job);
+            }
+            try {
+                SearchListener listener = job.listener == null ? null : result -> {
+                    if (!job.cancelled) {job.listener.onIteration(result);}
+                };
+                job.result.complete(job.engine.search(job.game, job.limits, listener, job.stop));
+            } catch (RuntimeException e) {
+                LOGGER.warn("Engine search for game " + job.gameId + " failed", e);
+                job.result.completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    running.remove(job);
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes the next search from the most urgent lane with work. Must be called
+     * holding the lock, with something queued.
+     */
+    private Job take() {
+        for (Lane lane : Lane.values()) {
+            LaneQueue queue = queues.get(lane);
+            if (queue.size == 0) {continue;}
+            Job job = queue.poll();
+            queued--;
+            long wait = System.nanoTime() - job.submitted;
+            queue.started++;
+            queue.totalWaitNanos += wait;
+            queue.maxWaitNanos = Math.max(queue.maxWaitNanos, wait);
+            return job;
+        }
+        throw new IllegalStateException("Nothing queued");
+    }
+
+    /**
+     * A search that was submitted, whether it is waiting, running or done.
+     */
+    public final class Job {
+
+        private final Lane lane;
+        private final int gameId;
+        private final String owner;
+        private final Engine engine;
+        private final ChessGame game;
+        private final SearchLimits limits;
+        private final SearchListener listener;
+        private final AtomicBoolean stop = new AtomicBoolean();
+        private final CompletableFuture<SearchResult> result = new CompletableFuture<>();
+        private final long submitted = System.nanoTime();
+        private volatile boolean cancelled;
+
+        private Job(Lane lane, int gameId, String owner, Engine engine, ChessGame game, SearchLimits limits,
+                    SearchListener listener) {
+            this.lane = lane;
+            this.gameId = gameId;
+            this.owner = owner;
+            this.engine = engine;
+            this.game = game;
+            this.limits = limits;
+            this.listener = listener;
+        }
+
+        public Lane getLane() {
+            return lane;
+        }
+
+        public int getGameId() {
+            return gameId;
+        }
+
+        /**
+         * @return the limits the search runs with, after the lane's budget
+         */
+        public SearchLimits getLimits() {
+            return limits;
+        }
+
+        /**
+         * @return completes with the search's result, or is cancelled with the search
+         */
+        public CompletableFuture<SearchResult> result() {
+            return result;
+        }
+
+        public void cancel() {
+            EngineScheduler.this.cancel(this);
+        }
+    }
+
+    /**
+     * @param queued         searches waiting now
+     * @param started        searches taken off the queue so far
+     * @param rejected       searches turned away because the queue was full
+     * @param cancelled      searches cancelled while waiting or running
+     * @param totalWaitNanos time started searches spent waiting, summed
+     * @param maxWaitNanos   longest wait of a started search
+     */
+    public record LaneMetrics(int queued, long started, long rejected, long cancelled, long totalWaitNanos,
+                              long maxWaitNanos) {
+
+        public long averageWaitNanos() {
+            return started == 0 ? 0 : totalWaitNanos / started;
+        }
+    }
+
+    /**
+     * @param running searches running now
+     */
+    public record Metrics(int running, Map<Lane, LaneMetrics> lanes) {
+
+        public int queued() {
+            int total = 0;
+            for (LaneMetrics lane : lanes.values()) {
+                total += lane.queued();
+            }
+            return total;
+        }
+    }
+
+    /**
+     * One lane: a queue per game and the order the games take turns in, with the
+     * lane's counters. Guarded by the scheduler's lock.
+     */
+    private static final class LaneQueue {
+
+        private final Map<Integer, ArrayDeque<Job>> games = new HashMap<>();
+        private final ArrayDeque<Integer> turns = new ArrayDeque<>();
+        private int size;
+        private long started;
+        private long rejected;
+        private long cancelled;
+        private long totalWaitNanos;
+        private long maxWaitNanos;
+
+        int waiting(int gameId) {
+            ArrayDeque<Job> jobs = games.get(gameId);
+            return jobs == null ? 0 : jobs.size();
+        }
+
+        void add(Job job) {
+            games.computeIfAbsent(job.gameId, id -> {
+                turns.addLast(id);
+                return new ArrayDeque<>();
+            }).addLast(job);
+            size++;
+        }
+
+        /**
+         * @return the next search of the game whose turn it is; the game goes to the
+         * back of the line if it has more waiting
+         */
+        Job poll() {
+            int gameId = turns.pollFirst();
+            ArrayDeque<Job> jobs = games.get(gameId);
+            Job job = jobs.pollFirst();
+            if (jobs.isEmpty()) {
+                games.remove(gameId);
+            } else {
+                turns.addLast(gameId);
+            }
+            size--;
+            return job;
+        }
+
+        boolean remove(Job job) {
+            ArrayDeque<Job> jobs = games.get(job.gameId);
+            if (jobs == null || !jobs.remove(job)) {return false;}
+            if (jobs.isEmpty()) {
+                games.remove(job.gameId);
+                turns.remove(job.gameId);
+            }
+            size--;
+            return true;
+        }
+
+        void forEach(Consumer<Job> action) {
+            for (ArrayDeque<Job> jobs : games.values()) {
+                jobs.forEach(action);
+            }
+        }
+    }
+}
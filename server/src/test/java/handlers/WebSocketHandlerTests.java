@@ -0,0 +1,287 @@
+package handlers;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.Fen;
+import chess.engine.Engine;
+import chess.engine.SearchResult;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import dataaccess.DataAccessException;
+import dataaccess.memory.MemoryAuthDao;
+import dataaccess.memory.MemoryGameDao;
+import io.javalin.websocket.WsCloseContext;
+import io.javalin.websocket.WsMessageContext;
+import messages.WebSocketMessage;
+import model.GameData;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.EngineScheduler;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+public class WebSocketHandlerTests {
+
+    private static final int GAME_ID = 7;
+    private static final int OTHER_GAME_ID = 8;
+    private static final ChessMove E4 = new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null);
+
+    private final MemoryAuthDao authDao = new MemoryAuthDao();
+    private final MemoryGameDao gameDao = new MemoryGameDao();
+    private final AtomicInteger searches = new AtomicInteger();
+    private final AtomicInteger stopped = new AtomicInteger();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    /** Reports one iteration, then waits until released or stopped. */
+    private final Engine engine = (game, limits, listener, stop) -> {
+        searches.incrementAndGet();
+        listener.onIteration(new SearchResult(E4, List.of(E4), 20, 1, 100, 1));
+        started.countDown();
+        try {
+            while (!stop.get() && !release.await(5, TimeUnit.MILLISECONDS)) {
+                Thread.onSpinWait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (stop.get()) {stopped.incrementAndGet();}
+        return new SearchResult(E4, List.of(E4), 30, 2, 200, 1);
+    };
+
+    private EngineScheduler scheduler;
+    private WebSocketHandler handler;
+
+    /**
+     * A websocket client: its session records everything the handler sends it.
+     */
+    private static final class Client {
+        final String token;
+        final Session session;
+        final List<JsonObject> received = new ArrayList<>();
+
+        Client(String token, int id) {
+            this.token = token;
+            RemoteEndpoint remote = (RemoteEndpoint) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{RemoteEndpoint.class}, (proxy, method, args) -> {
+                        if (method.getName().equals("sendString")) {
+                            synchronized (received) {
+                                received.add(new Gson().fromJson((String) args[0], JsonObject.class));
+                            }
+                        }
+                        return null;
+                    });
+            this.session = (Session) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{Session.class}, (proxy, method, args) -> switch (method.getName()) {
+                        case "getRemote" -> remote;
+                        case "equals" -> proxy == args[0];
+                        case "hashCode" -> id;
+                        case "toString" -> "session " + id;
+                        default -> null;
+                    });
+        }
+
+        WsMessageContext message(String json) {
+            return new WsMessageContext("session-" + token, session, json);
+        }
+
+        WsCloseContext closed() {
+            return new WsCloseContext("session-" + token, session, 1000, "bye");
+        }
+
+        List<JsonObject> of(String type) {
+            synchronized (received) {
+                return received.stream().filter(m -> type.equals(m.get("serverMessageType").getAsString())).toList();
+            }
+        }
+
+        /**
+         * Waits for messages of a type to match, since analysis arrives from worker threads.
+         */
+        List<JsonObject> await(String type, Predicate<List<JsonObject>> until) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!until.test(of(type)) && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            return of(type);
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws DataAccessException {
+        gameDao.createGame(new GameData(GAME_ID, null, null, "game", new ChessGame()));
+        use(new EngineScheduler(1));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.close();
+    }
+
+    private void use(EngineScheduler scheduler) {
+        use(scheduler, engine);
+    }
+
+    private void use(EngineScheduler scheduler, Engine engine) {
+        if (this.scheduler != null) {this.scheduler.close();}
+        this.scheduler = scheduler;
+        this.handler = new WebSocketHandler(gameDao, authDao, scheduler, engine);
+    }
+
+    private Client connect(String username, int id) throws DataAccessException {
+        return connect(username, id, GAME_ID);
+    }
+
+    private Client connect(String username, int id, int gameId) throws DataAccessException {
+        Client client = new Client(authDao.createAuth(username), id);
+        send(client, "CONNECT", gameId, null);
+        return client;
+    }
+
+    private void send(Client client, String command) throws DataAccessException {
+        send(client, command, GAME_ID, null);
+    }
+
+    private void send(Client client, String command, int gameId, ChessMove move) throws DataAccessException {
+        WebSocketMessage message = new WebSocketMessage();
+        message.commandType = command;
+        message.authToken = client.token;
+        message.gameID = gameId;
+        message.move = move;
+        handler.message(client.message(new Gson().toJson(message)));
+    }
+
+    @Test
+    public void testSubscribersShareOneSearch() throws Exception {
+        Client first = connect("white", 1);
+        Client second = connect("spectator", 2);
+
+        send(first, "HINT");
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, first.await("ANALYSIS", m -> m.size() == 1).size());
+
+        // A late joiner is sent the latest result straight away
+        send(second, "HINT");
+        List<JsonObject> latest = second.of("ANALYSIS");
+        Assertions.assertEquals(1, latest.size());
+        Assertions.assertEquals(1, latest.get(0).get("depth").getAsInt());
+        Assertions.assertFalse(latest.get(0).get("complete").getAsBoolean());
+
+        release.countDown();
+        for (Client client : List.of(first, second)) {
+            List<JsonObject> messages = client.await("ANALYSIS", m -> m.size() == 2);
+            Assertions.assertEquals(2, messages.size());
+            JsonObject last = messages.get(1);
+            Assertions.assertTrue(last.get("complete").getAsBoolean());
+            Assertions.assertEquals(30, last.get("score").getAsInt());
+            Assertions.assertEquals(1, last.getAsJsonArray("principalVariation").size());
+        }
+        Assertions.assertEquals(1, searches.get());
+
+        // Once finished the search is forgotten, and asking again searches again
+        send(second, "HINT");
+        Assertions.assertEquals(4, second.await("ANALYSIS", m -> m.size() == 4).size());
+        Assertions.assertEquals(2, searches.get());
+    }
+
+    @Test
+    public void testLastSubscriberLeavingCancelsSearch() throws Exception {
+        Client first = connect("white", 1);
+        Client second = connect("spectator", 2);
+
+        send(first, "ANALYZE");
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        send(second, "ANALYZE");
+
+        handler.handleLeave(first.message(""));
+        Thread.sleep(50);
+        Assertions.assertEquals(0, stopped.get());
+        Assertions.assertEquals(0, scheduler.metrics().lanes().get(EngineScheduler.Lane.ANALYSIS).cancelled());
+
+        handler.close(second.closed());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (stopped.get() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Assertions.assertEquals(1, stopped.get());
+        Assertions.assertEquals(1, scheduler.metrics().lanes().get(EngineScheduler.Lane.ANALYSIS).cancelled());
+        Assertions.assertTrue(second.of("ANALYSIS").stream().noneMatch(m -> m.get("complete").getAsBoolean()));
+    }
+
+    @Test
+    public void testRejectedSearchLeavesNothingBehind() throws Exception {
+        use(new EngineScheduler(1, 0, 1, Map.of()));
+        Client first = connect("white", 1);
+        Client second = connect("spectator", 2);
+
+        send(first, "HINT");
+        send(second, "HINT");
+        Assertions.assertEquals(1, first.of("ERROR").size());
+        // A stale entry would have let the second request join a search that never runs
+        Assertions.assertEquals(1, second.of("ERROR").size());
+        Assertions.assertEquals(2, scheduler.metrics().lanes().get(EngineScheduler.Lane.HINT).rejected());
+        Assertions.assertEquals(0, searches.get());
+    }
+
+    @Test
+    public void testBookMoveHasNoScore() throws Exception {
+        use(new EngineScheduler(1), (game, limits, listener, stop) -> SearchResult.bookMove(E4, 1));
+        Client white = connect("white", 1);
+
+        send(white, "HINT");
+        JsonObject hint = white.await("ANALYSIS", m -> m.size() == 1).get(0);
+        Assertions.assertTrue(hint.get("complete").getAsBoolean());
+        Assertions.assertFalse(hint.has("score"));
+        Assertions.assertEquals("book", hint.get("scoreText").getAsString());
+    }
+
+    @Test
+    public void testGameOverOnTheBoardRefusesMovesAfterRestart() throws Exception {
+        // A bishop is not enough to mate with, though both sides still have moves
+        String fen = "8/8/4k3/8/8/2B5/4K3/8 w - - 0 1";
+        // Stored before this handler started, as after a restart
+        gameDao.createGame(new GameData(OTHER_GAME_ID, "white", "black", "drawn", Fen.parse(fen)));
+
+        Client white = connect("white", 1, OTHER_GAME_ID);
+        Assertions.assertEquals(1, white.of("LOAD_GAME").size());
+        Assertions.assertTrue(white.of("NOTIFICATION").get(0).get("message").getAsString()
+                .contains("Insufficient Material"));
+
+        send(white, "MAKE_MOVE", OTHER_GAME_ID, new ChessMove(ChessPosition.of(3, 3), ChessPosition.of(4, 4), null));
+        Assertions.assertEquals(1, white.of("ERROR").size());
+        Assertions.assertEquals(fen, Fen.toFen(gameDao.getGame(OTHER_GAME_ID).getGame()));
+    }
+
+    @Test
+    public void testGameOverEvictsItsClients() throws Exception {
+        gameDao.createGame(new GameData(OTHER_GAME_ID, "white", "black", "mate",
+                Fen.parse("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1")));
+        Client white = connect("white", 1, OTHER_GAME_ID);
+        Client black = connect("black", 2, OTHER_GAME_ID);
+
+        send(white, "MAKE_MOVE", OTHER_GAME_ID, new ChessMove(ChessPosition.of(1, 1), ChessPosition.of(8, 1), null));
+        Assertions.assertEquals(2, black.of("LOAD_GAME").size());
+        Assertions.assertEquals(2, black.of("NOTIFICATION").size());
+
+        // Nobody is told about a game that has been forgotten, and nothing more can happen in it
+        send(white, "LEAVE", OTHER_GAME_ID, null);
+        Assertions.assertEquals(2, black.of("NOTIFICATION").size());
+        send(black, "MAKE_MOVE", OTHER_GAME_ID, new ChessMove(ChessPosition.of(7, 8), ChessPosition.of(6, 8), null));
+        send(black, "HINT", OTHER_GAME_ID, null);
+        send(black, "RESIGN", OTHER_GAME_ID, null);
+        Assertions.assertEquals(3, black.of("ERROR").size());
+        Assertions.assertEquals(0, searches.get());
+    }
+}
@@ -0,0 +1,177 @@
+package service;
+
+import chess.ChessGame;
+import chess.engine.Engine;
+import chess.engine.SearchLimits;
+import chess.engine.SearchResult;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class EngineSchedulerTests {
+
+    /** Records the depth of each search it runs, which the tests use as a label. */
+    private final List<Integer> order = new ArrayList<>();
+    private final Engine recorder = (game, limits, listener, stop) -> {
+        synchronized (order) {
+            order.add(limits.depth());
+        }
+        return new SearchResult(null, List.of(), 0, limits.depth(), 1, 1);
+    };
+
+    /** Counts the latch down, then spins until it is stopped. */
+    private static Engine blocker(CountDownLatch started) {
+        return (game, limits, listener, stop) -> {
+            started.countDown();
+            while (!stop.get()) {
+                Thread.onSpinWait();
+            }
+            return new SearchResult(null, List.of(), 0, 1, 1, 1);
+        };
+    }
+
+    private static EngineScheduler singleWorker() {
+        return new EngineScheduler(1, 64, 4, Map.of());
+    }
+
+    @Test
+    public void testLanesByPriorityAndGamesTakeTurns() throws Exception {
+        ChessGame game = new ChessGame();
+        try (EngineScheduler scheduler = singleWorker()) {
+            CountDownLatch started = new CountDownLatch(1);
+            EngineScheduler.Job busy = scheduler.submit(EngineScheduler.Lane.BOT_MOVE, 9, "a", blocker(started), game,
+                    SearchLimits.depth(1), null);
+            Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            scheduler.submit(EngineScheduler.Lane.ANALYSIS, 1, "a", recorder, game, SearchLimits.depth(10), null);
+            scheduler.submit(EngineScheduler.Lane.HINT, 1, "a", recorder, game, SearchLimits.depth(11), null);
+            scheduler.submit(EngineScheduler.Lane.BOT_MOVE, 1, "a", recorder, game, SearchLimits.depth(12), null);
+            scheduler.submit(EngineScheduler.Lane.BOT_MOVE, 1, "a", recorder, game, SearchLimits.depth(13), null);
+            scheduler.submit(EngineScheduler.Lane.BOT_MOVE, 1, "a", recorder, game, SearchLimits.depth(14), null);
+            scheduler.submit(EngineScheduler.Lane.BOT_MOVE, 2, "b", recorder, game, SearchLimits.depth(15), null);
+            EngineScheduler.Job last = scheduler.submit(EngineScheduler.Lane.BOT_MOVE, 3, "c", recorder, game,
+                    SearchLimits.depth(16), null);
+            Assertions.assertEquals(7, scheduler.metrics().queued());
+
+            busy.cancel();
+            Assertions.assertThrows(CancellationException.class, () -> busy.result().join());
+            EngineScheduler.Job analysis = scheduler.submit(EngineScheduler.Lane.ANALYSIS, 1, "a", recorder, game,
+                    SearchLimits.depth(17), null);
+            analysis.result().get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals(16, last.result().get(5, TimeUnit.SECONDS).depth());
+            synchronized (order) {
+                Assertions.assertEquals(List.of(12, 15, 16, 13, 14, 11, 10, 17), order);
+            }
+        }
+    }
+
+    @Test
+    public void testCancelOwnerStopsWaitingAndRunning() throws Exception {
+        ChessGame game = new ChessGame();
+        try (EngineScheduler scheduler = singleWorker()) {
+            CountDownLatch started = new CountDownLatch(1);
+            EngineScheduler.Job running = scheduler.submit(EngineScheduler.Lane.HINT, 1, "gone", blocker(started), game,
+                    SearchLimits.depth(1), null);
+            Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+            EngineScheduler.Job waiting = scheduler.submit(EngineScheduler.Lane.HINT, 1, "gone", recorder, game,
+                    SearchLimits.depth(2), null);
+            EngineScheduler.Job other = scheduler.submit(EngineScheduler.Lane.HINT, 1, "stays", recorder, game,
+                    SearchLimits.depth(3), null);
+
+            Assertions.assertEquals(2, scheduler.cancelOwner("gone"));
+            Assertions.assertTrue(running.result().isCancelled());
+            Assertions.assertTrue(waiting.result().isCancelled());
+            Assertions.assertEquals(3, other.result().get(5, TimeUnit.SECONDS).depth());
+            synchronized (order) {
+                Assertions.assertEquals(List.of(3), order);
+            }
+            EngineScheduler.LaneMetrics hints = scheduler.metrics().lanes().get(EngineScheduler.Lane.HINT);
+            Assertions.assertEquals(2, hints.cancelled());
+            Assertions.assertEquals(2, hints.started());
+            Assertions.assertTrue(hints.maxWaitNanos() >= hints.averageWaitNanos());
+        }
+    }
+
+    @Test
+    public void testCancelAfterFinishIsIgnored() throws Exception {
+        ChessGame game = new ChessGame();
+        try (EngineScheduler scheduler = singleWorker()) {
+            EngineScheduler.Job done = scheduler.submit(EngineScheduler.Lane.HINT, 1, "a", recorder, game,
+                    SearchLimits.depth(4), null);
+            Assertions.assertEquals(4, done.result().get(5, TimeUnit.SECONDS).depth());
+            done.cancel();
+            Assertions.assertEquals(0, scheduler.cancelOwner("a"));
+            Assertions.assertFalse(done.result().isCancelled());
+            Assertions.assertEquals(0, scheduler.metrics().lanes().get(EngineScheduler.Lane.HINT).cancelled());
+        }
+    }
+
+    @Test
+    public void testCancelCallbackMaySubmit() throws Exception {
+        ChessGame game = new ChessGame();
+        try (EngineScheduler scheduler = singleWorker()) {
+            CountDownLatch started = new CountDownLatch(1);
+            EngineScheduler.Job running = scheduler.submit(EngineScheduler.Lane.HINT, 1, "a", blocker(started), game,
+                    SearchLimits.depth(1), null);
+            Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+            // Another thread holding a lock the callback needs, then submitting, must not deadlock
+            Object lock = new Object();
+            List<EngineScheduler.Job> followUps = new ArrayList<>();
+            running.result().whenComplete((result, error) -> {
+                synchronized (lock) {
+                    followUps.add(scheduler.submit(EngineScheduler.Lane.HINT, 1, "a", recorder, game,
+                            SearchLimits.depth(5), null));
+                }
+            });
+            Thread canceller = new Thread(running::cancel);
+            synchronized (lock) {
+                canceller.start();
+                scheduler.submit(EngineScheduler.Lane.HINT, 2, "b", recorder, game, SearchLimits.depth(6), null);
+            }
+            canceller.join(5_000);
+            Assertions.assertFalse(canceller.isAlive());
+            Assertions.assertEquals(5, followUps.get(0).result().get(5, TimeUnit.SECONDS).depth());
+        }
+    }
+
+    @Test
+    public void testRejectsTooManyPerGame() throws Exception {
+        ChessGame game = new ChessGame();
+        try (EngineScheduler scheduler = new EngineScheduler(1, 3, 2, Map.of())) {
+            CountDownLatch started = new CountDownLatch(1);
+            scheduler.submit(EngineScheduler.Lane.ANALYSIS, 1, "a", blocker(started), game, SearchLimits.depth(1),
+                    null);
+            Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+            scheduler.submit(EngineScheduler.Lane.ANALYSIS, 1, "a", recorder, game, SearchLimits.depth(1), null);
+            scheduler.submit(EngineScheduler.Lane.ANALYSIS, 1, "a", recorder, game, SearchLimits.depth(1), null);
+            Assertions.assertThrows(RejectedExecutionException.class, () -> scheduler.submit(
+                    EngineScheduler.Lane.ANALYSIS, 1, "a", recorder, game, SearchLimits.depth(1), null));
+            scheduler.submit(EngineScheduler.Lane.HINT, 1, "a", recorder, game, SearchLimits.depth(1), null);
+            Assertions.assertThrows(RejectedExecutionException.class, () -> scheduler.submit(
+                    EngineScheduler.Lane.HINT, 2, "b", recorder, game, SearchLimits.depth(1), null));
+            Assertions.assertEquals(2, scheduler.metrics().lanes().get(EngineScheduler.Lane.ANALYSIS).queued());
+        }
+    }
+
+    @Test
+    public void testBudgetCapsLimits() throws Exception {
+        ChessGame game = new ChessGame();
+        try (EngineScheduler scheduler = new EngineScheduler(1)) {
+            EngineScheduler.Job hint = scheduler.submit(EngineScheduler.Lane.HINT, 1, "a", recorder, game,
+                    SearchLimits.nodes(1_000_000), null);
+            Assertions.assertEquals(new SearchLimits(SearchLimits.MAX_DEPTH, 1_000_000, 2_000), hint.getLimits());
+            hint.result().get(5, TimeUnit.SECONDS);
+
+            EngineScheduler.Job quick = scheduler.submit(EngineScheduler.Lane.ANALYSIS, 1, "a", recorder, game,
+                    SearchLimits.millis(50), null);
+            Assertions.assertEquals(50, quick.getLimits().millis());
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package chess;
+
+/**
+ * Precomputed attack tables indexed by square (0 for a1 up to 63 for h8).
+ * Knight, king and pawn attacks are plain lookups and sliding attacks go through
+ * {@link Magics}. The ray masks hold every square in one direction up to the edge of
+ * the board and are used for pin detection and to build the magic tables.
+ * <p>
+ * The tables stay inside the package; other packages ask through {@link #king(int)}
+ * and {@link #of}.
+ */
+public final class Attacks {
+
+    static final long[] KNIGHT = new long[64];
+    static final long[] KING = new long[64];
+    /** PAWN[color][square] holds the squares a pawn of that color attacks. */
+    static final long[][] PAWN = new long[2][64];
+    /** RAYS[direction][square], directions ordered as {@link #DIRECTIONS}. */
+    static final long[][] RAYS = new long[8][64];
+
+    /** BETWEEN[a][b] holds the squares strictly between two aligned squares, otherwise 0. */
+    static final long[][] BETWEEN = new long[64][64];
+    /** LINE[a][b] holds the whole line through two aligned squares, otherwise 0. */
+    static final long[][] LINE = new long[64][64];
+
+    /** Row and column steps; the first four move towards higher square indices. */
+    static final int[][] DIRECTIONS = {{1, 0}, {0, 1}, {1, 1}, {1, -1}, {-1, 0}, {0, -1}, {-1, -1}, {-1, 1}};
+
+    private static final int[][] KNIGHT_STEPS = {{2, 1}, {2, -1}, {1, 2}, {1, -2}, {-1, 2}, {-1, -2}, {-2, 1}, {-2, -1}};
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            int row = square >>> 3;
+            int col = square & 7;
+            for (int[] step : KNIGHT_STEPS) {
+                KNIGHT[square] |= bit(row + step[0], col + step[1]);
+            }
+            for (int direction = 0; direction < 8; direction++) {
+                int[] step = DIRECTIONS[direction];
+                KING[square] |= bit(row + step[0], col + step[1]);
+                for (int r = row + step[0], c = col + step[1]; onBoard(r, c); r += step[0], c += step[1]) {
+                    RAYS[direction][square] |= bit(r, c);
+                }
+            }
+            PAWN[ChessGame.TeamColor.WHITE.ordinal()][square] = bit(row + 1, col - 1) | bit(row + 1, col + 1);
+            PAWN[ChessGame.TeamColor.BLACK.ordinal()][square] = bit(row - 1, col - 1) | bit(row - 1, col + 1);
+        }
+        for (int square = 0; square < 64; square++) {
+            for (int direction = 0; direction < 8; direction++) {
+                long ray = RAYS[direction][square];
+                long line = ray | RAYS[(direction + 4) % 8][square] | (1L << square);
+                for (long targets = ray; targets != 0; targets &= targets - 1) {
+                    int target = Long.numberOfTrailingZeros(targets);
+                    BETWEEN[square][target] = ray & ~RAYS[direction][target] & ~(1L << target);
+                    LINE[square][target] = line;
+                }
+            }
+        }
+    }
+
+    private Attacks() {
+    }
+
+    /**
+     * @return the nearest occupied square from {@code square} in the given direction,
+     * or -1 if the ray reaches the edge of the board without hitting anything
+     */
+    static int firstBlocker(int direction, int square, long occupied) {
+        long blockers = RAYS[direction][square] & occupied;
+        if (blockers == 0) {return -1;}
+        return direction < 4 ? Long.numberOfTrailingZeros(blockers) : 63 - Long.numberOfLeadingZeros(blockers);
+    }
+
+    /**
+     * @return squares a king on {@code square} attacks
+     */
+    public static long king(int square) {
+        return KING[square];
+    }
+
+    /**
+     * @return squares a piece of the type and color on {@code square} attacks, sliding
+     * pieces stopping at the first occupied square
+     */
+    public static long of(ChessPiece.PieceType type, ChessGame.TeamColor color, int square, long occupied) {
+        return switch (type) {
+            case KING -> KING[square];
+            case KNIGHT -> KNIGHT[square];
+            case PAWN -> PAWN[color.ordinal()][square];
+            case BISHOP -> Magics.bishop(square, occupied);
+            case ROOK -> Magics.rook(square, occupied);
+            case QUEEN -> Magics.bishop(square, occupied) | Magics.rook(square, occupied);
+        };
+    }
+
+    static long rook(int square, long occupied) {
+        return Magics.rook(square, occupied);
+    }
+
+    static long bishop(int square, long occupied) {
+        return Magics.bishop(square, occupied);
+    }
+
+    /**
+     * Ray-walking rook attacks, used to fill the magic tables.
+     */
+    static long slowRook(int square, long occupied) {
+        return slide(square, occupied, 0) | slide(square, occupied, 1) | slide(square, occupied, 4)
+                | slide(square, occupied, 5);
+    }
+
+    /**
+     * Ray-walking bishop attacks, used to fill the magic tables.
+     */
+    static long slowBishop(int square, long occupied) {
+        return slide(square, occupied, 2) | slide(square, occupied, 3) | slide(square, occupied, 6)
+                | slide(square, occupied, 7);
+    }
+
+    /**
+     * @return the squares reached along one ray, up to and including the first blocker
+     */
+    private static long slide(int square, long occupied, int direction) {
+        long ray = RAYS[direction][square];
+        int blocker = firstBlocker(direction, square, occupied);
+        return blocker < 0 ? ray : ray ^ RAYS[direction][blocker];
+    }
+
+    static boolean isOrthogonal(int direction) {
+        return direction == 0 || direction == 1 || direction == 4 || direction == 5;
+    }
+
+    private static boolean onBoard(int row, int col) {
+        return row >= 0 && row < 8 && col >= 0 && col < 8;
+    }
+
+    private static long bit(int row, int col) {
+        return onBoard(row, col) ? 1L << (row * 8 + col) : 0L;
+    }
+}
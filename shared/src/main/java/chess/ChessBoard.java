@@ -1,19 +1,47 @@
 package chess;
 
 import java.util.Arrays;
-import java.util.Objects;
 
 /**
  * A chessboard that can hold and rearrange chess pieces.
  * <p>
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
+ * <p>
+ * The 8x8 array is the serialized form of the board. Alongside it the board keeps
+ * one 64-bit mask per piece type and color plus occupancy masks, where bit
+ * {@code (row - 1) * 8 + (column - 1)} stands for a square. The masks are transient
+ * and are rebuilt from the array whenever the array was replaced behind our back
+ * (e.g. by Gson).
  */
 public class ChessBoard {
 
     private ChessPiece[][] board = new ChessPiece[8][8];
+
+    private transient long[] pieces = new long[12];
+    private transient long[] colors = new long[2];
+    private transient long occupied;
+    private transient long key;
+    private transient long material;
+    private transient ChessPiece[][] indexed;
+
+    private transient int[] kingSquares = {-1, -1};
+    private transient int[][] pieceLists = new int[2][64];
+    private transient int[] pieceCounts = new int[2];
+    private transient int[] listIndex = new int[64];
+
+    private transient ChessPiece[] undoMoved = new ChessPiece[32];
+    private transient ChessPiece[] undoCaptured = new ChessPiece[32];
+    private transient int[] undoSquares = new int[32];
+    private transient int undoSize;
+
+    /** Material signature bits for queens, rooks and pawns of either color. */
+    private static final long MATING_MATERIAL = materialMask(ChessPiece.PieceType.QUEEN)
+            | materialMask(ChessPiece.PieceType.ROOK) | materialMask(ChessPiece.PieceType.PAWN);
+    private static final long LIGHT_SQUARES = 0x55AA_55AA_55AA_55AAL;
+
     public ChessBoard() {
-        
+        indexed = board;
     }
 
     /**
@@ -23,7 +51,10 @@ public class ChessBoard {
      * @param piece    the piece to add
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
-        board[position.getRow()-1][position.getColumn()-1] = piece;
+        ensureIndexed();
+        int square = square(position);
+        if (getPiece(square) != null) {remove(square);}
+        if (piece != null) {place(square, piece);}
     }
 
     /**
@@ -37,36 +68,317 @@ public class ChessBoard {
         return board[position.getRow()-1][position.getColumn()-1];
     }
 
+    /**
+     * @param square square index, 0 for a1 up to 63 for h8
+     * @return the piece on that square, or null if it is empty
+     */
+    public ChessPiece getPiece(int square) {
+        return board[square >>> 3][square & 7];
+    }
+
+    /**
+     * Gives direct access to the backing array. Writing to it directly bypasses the
+     * bitboards, so use {@link #addPiece} to change the board.
+     */
     public ChessPiece[][] getBoard() {
         return board;
     }
 
+    /**
+     * @return mask of the squares holding pieces of the given color and type
+     */
+    public long getPieces(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        ensureIndexed();
+        return pieces[color.ordinal() * 6 + type.ordinal()];
+    }
+
+    /**
+     * @return mask of the squares holding pieces of the given color
+     */
+    public long getOccupancy(ChessGame.TeamColor color) {
+        ensureIndexed();
+        return colors[color.ordinal()];
+    }
+
+    /**
+     * @return mask of every occupied square
+     */
+    public long getOccupancy() {
+        ensureIndexed();
+        return occupied;
+    }
+
+    /**
+     * @return Zobrist key of the pieces on the board, kept up to date on every change
+     * @see Zobrist
+     */
+    public long getKey() {
+        ensureIndexed();
+        return key;
+    }
+
+    /**
+     * @return material signature: four bits per color and piece type, at bit
+     * {@code (color * 6 + type ordinal) * 4}, holding how many of that piece are on the
+     * board (saturating counts are never reached with legal material)
+     */
+    public long getMaterial() {
+        ensureIndexed();
+        return material;
+    }
+
+    /**
+     * Decides from the material signature whether neither team can possibly deliver
+     * checkmate: king against king, a lone minor piece, or only bishops that all stand
+     * on squares of the same color.
+     *
+     * @return true if the position is a dead draw by insufficient material
+     */
+    public boolean isInsufficientMaterial() {
+        ensureIndexed();
+        if ((material & MATING_MATERIAL) != 0) {return false;}
+
+        int knights = count(ChessPiece.PieceType.KNIGHT);
+        int bishops = count(ChessPiece.PieceType.BISHOP);
+        if (knights + bishops <= 1) {return true;}
+        if (knights > 0) {return false;}
+        long allBishops = pieces[ChessPiece.PieceType.BISHOP.ordinal()] | pieces[6 + ChessPiece.PieceType.BISHOP.ordinal()];
+        return (allBishops & LIGHT_SQUARES) == 0 || (allBishops & ~LIGHT_SQUARES) == 0;
+    }
+
+    private static long materialMask(ChessPiece.PieceType type) {
+        return 0xFL << (type.ordinal() * 4) | 0xFL << ((6 + type.ordinal()) * 4);
+    }
+
+    private int count(ChessPiece.PieceType type) {
+        int white = (int) (material >>> (type.ordinal() * 4)) & 0xF;
+        int black = (int) (material >>> ((6 + type.ordinal()) * 4)) & 0xF;
+        return white + black;
+    }
+
+    /**
+     * @return square index of the team's king, or -1 if it has none on the board
+     */
+    public int getKingSquare(ChessGame.TeamColor color) {
+        ensureIndexed();
+        return kingSquares[color.ordinal()];
+    }
+
+    /**
+     * @return how many pieces the team has on the board
+     */
+    public int getPieceCount(ChessGame.TeamColor color) {
+        ensureIndexed();
+        return pieceCounts[color.ordinal()];
+    }
+
+    /**
+     * Walks a team's piece list. The order is arbitrary but is left unchanged by a
+     * move of that team followed by {@link #undoMove()}, so the list can be iterated
+     * while trying moves out.
+     *
+     * @param index from 0 up to {@link #getPieceCount} exclusive
+     * @return square index of that piece
+     */
+    public int getPieceSquare(ChessGame.TeamColor color, int index) {
+        ensureIndexed();
+        return pieceLists[color.ordinal()][index];
+    }
+
+    /**
+     * Works backwards from the target square: looks up the knight, king and pawn
+     * squares that could reach it and the rook and bishop lines running out of it.
+     *
+     * @param square   square index, 0 for a1 up to 63 for h8
+     * @param attacker the team whose pieces might be attacking
+     * @return true if any piece of {@code attacker} attacks the square
+     */
+    public boolean isSquareAttacked(int square, ChessGame.TeamColor attacker) {
+        ensureIndexed();
+        int side = attacker.ordinal() * 6;
+        if ((Attacks.KNIGHT[square] & pieces[side + ChessPiece.PieceType.KNIGHT.ordinal()]) != 0) {return true;}
+        if ((Attacks.KING[square] & pieces[side + ChessPiece.PieceType.KING.ordinal()]) != 0) {return true;}
+        if ((Attacks.PAWN[1 - attacker.ordinal()][square] & pieces[side + ChessPiece.PieceType.PAWN.ordinal()]) != 0) {
+            return true;
+        }
+
+        long queens = pieces[side + ChessPiece.PieceType.QUEEN.ordinal()];
+        long straight = pieces[side + ChessPiece.PieceType.ROOK.ordinal()] | queens;
+        long diagonal = pieces[side + ChessPiece.PieceType.BISHOP.ordinal()] | queens;
+        return (straight != 0 && (Attacks.rook(square, occupied) & straight) != 0)
+                || (diagonal != 0 && (Attacks.bishop(square, occupied) & diagonal) != 0);
+    }
+
+    /**
+     * Finds every piece of one team that attacks a square, treating {@code occupied}
+     * as the set of occupied squares so callers can look through pieces that are about
+     * to move.
+     *
+     * @return mask of the attacking pieces
+     */
+    public long attackersTo(int square, ChessGame.TeamColor attacker, long occupied) {
+        ensureIndexed();
+        int side = attacker.ordinal() * 6;
+        long queens = pieces[side + ChessPiece.PieceType.QUEEN.ordinal()];
+        return (Attacks.KNIGHT[square] & pieces[side + ChessPiece.PieceType.KNIGHT.ordinal()])
+                | (Attacks.KING[square] & pieces[side + ChessPiece.PieceType.KING.ordinal()])
+                | (Attacks.PAWN[1 - attacker.ordinal()][square] & pieces[side + ChessPiece.PieceType.PAWN.ordinal()])
+                | (Attacks.rook(square, occupied) & (pieces[side + ChessPiece.PieceType.ROOK.ordinal()] | queens))
+                | (Attacks.bishop(square, occupied) & (pieces[side + ChessPiece.PieceType.BISHOP.ordinal()] | queens));
+    }
+
+    /**
+     * Plays a move in place without checking that it is legal and remembers what is
+     * needed to take it back with {@link #undoMove()}. Nothing is allocated unless the
+     * undo stack has to grow.
+     *
+     * @param move the move to play; the start square must hold a piece
+     */
+    public void applyMove(ChessMove move) {
+        applyMove(Move.of(this, move));
+    }
+
+    /**
+     * Same as {@link #applyMove(ChessMove)} for a packed {@link Move}.
+     */
+    public void applyMove(int move) {
+        ensureIndexed();
+        int from = Move.from(move);
+        int to = Move.to(move);
+        ChessPiece moved = getPiece(from);
+        ChessPiece captured = getPiece(to);
+
+        if (undoSquares == null || undoSize == undoSquares.length) {growUndo();}
+        undoMoved[undoSize] = moved;
+        undoCaptured[undoSize] = captured;
+        undoSquares[undoSize] = from | (to << 6);
+        undoSize++;
+
+        ChessPiece placed = moved;
+        ChessPiece.PieceType promotion = Move.promotion(move);
+        if (promotion != null && moved.getPieceType() == ChessPiece.PieceType.PAWN) {
+            placed = ChessPiece.of(moved.getTeamColor(), promotion);
+        }
+        if (captured != null) {remove(to);}
+        relocate(from, to, placed);
+    }
+
+    /**
+     * Takes back the last move played with {@code applyMove}, restoring the
+     * moved piece (before any promotion) and whatever it captured.
+     */
+    public void undoMove() {
+        if (undoSize == 0) {
+            throw new IllegalStateException("No move to undo");
+        }
+        undoSize--;
+        int squares = undoSquares[undoSize];
+        ChessPiece moved = undoMoved[undoSize];
+        ChessPiece captured = undoCaptured[undoSize];
+        undoMoved[undoSize] = null;
+        undoCaptured[undoSize] = null;
+
+        ensureIndexed();
+        int to = squares >>> 6;
+        relocate(to, squares & 63, moved);
+        if (captured != null) {place(to, captured);}
+    }
+
+    private void place(int square, ChessPiece piece) {
+        long bit = 1L << square;
+        int color = piece.getTeamColor().ordinal();
+        board[square >>> 3][square & 7] = piece;
+        key ^= Zobrist.PIECES[index(piece)][square];
+        pieces[index(piece)] |= bit;
+        material += 1L << (index(piece) * 4);
+        colors[color] |= bit;
+        occupied |= bit;
+
+        listIndex[square] = pieceCounts[color];
+        pieceLists[color][pieceCounts[color]++] = square;
+        if (piece.getPieceType() == ChessPiece.PieceType.KING) {kingSquares[color] = square;}
+    }
+
+    private void remove(int square) {
+        ChessPiece piece = getPiece(square);
+        long bit = 1L << square;
+        int color = piece.getTeamColor().ordinal();
+        board[square >>> 3][square & 7] = null;
+        key ^= Zobrist.PIECES[index(piece)][square];
+        pieces[index(piece)] &= ~bit;
+        material -= 1L << (index(piece) * 4);
+        colors[color] &= ~bit;
+        occupied &= ~bit;
+
+        int last = pieceLists[color][--pieceCounts[color]];
+        pieceLists[color][listIndex[square]] = last;
+        listIndex[last] = listIndex[square];
+        if (kingSquares[color] == square) {
+            long kings = pieces[index(piece)];
+            kingSquares[color] = kings == 0 ? -1 : Long.numberOfTrailingZeros(kings);
+        }
+    }
+
+    /**
+     * Moves the piece on {@code from} to the empty square {@code to}, possibly changing
+     * its type, while keeping its slot in the piece list.
+     */
+    private void relocate(int from, int to, ChessPiece piece) {
+        ChessPiece previous = getPiece(from);
+        long fromBit = 1L << from;
+        long toBit = 1L << to;
+        int color = piece.getTeamColor().ordinal();
+        board[from >>> 3][from & 7] = null;
+        board[to >>> 3][to & 7] = piece;
+        pieces[index(previous)] &= ~fromBit;
+        pieces[index(piece)] |= toBit;
+        material += (1L << (index(piece) * 4)) - (1L << (index(previous) * 4));
+        key ^= Zobrist.PIECES[index(previous)][from] ^ Zobrist.PIECES[index(piece)][to];
+        colors[color] ^= fromBit | toBit;
+        occupied ^= fromBit | toBit;
+
+        listIndex[to] = listIndex[from];
+        pieceLists[color][listIndex[to]] = to;
+        if (kingSquares[color] == from) {kingSquares[color] = to;}
+    }
+
+    private void growUndo() {
+        int size = undoSquares == null ? 32 : undoSquares.length * 2;
+        undoMoved = undoMoved == null ? new ChessPiece[size] : Arrays.copyOf(undoMoved, size);
+        undoCaptured = undoCaptured == null ? new ChessPiece[size] : Arrays.copyOf(undoCaptured, size);
+        undoSquares = undoSquares == null ? new int[size] : Arrays.copyOf(undoSquares, size);
+    }
+
     public ChessBoard deepCopy() {
-        ChessBoard board = new ChessBoard();
+        ensureIndexed();
+        ChessBoard copy = new ChessBoard();
         for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                ChessPiece piece = this.board[row][col];
-                if  (piece != null) {
-                    board.board[row][col] = piece;
-                }
-            }
+            System.arraycopy(board[row], 0, copy.board[row], 0, 8);
         }
-        return board;
+        System.arraycopy(pieces, 0, copy.pieces, 0, pieces.length);
+        System.arraycopy(colors, 0, copy.colors, 0, colors.length);
+        copy.occupied = occupied;
+        copy.key = key;
+        copy.material = material;
+        System.arraycopy(kingSquares, 0, copy.kingSquares, 0, 2);
+        System.arraycopy(pieceCounts, 0, copy.pieceCounts, 0, 2);
+        System.arraycopy(pieceLists[0], 0, copy.pieceLists[0], 0, 64);
+        System.arraycopy(pieceLists[1], 0, copy.pieceLists[1], 0, 64);
+        System.arraycopy(listIndex, 0, copy.listIndex, 0, 64);
+        return copy;
     }
+
     /**
      * Sets the board to the default starting board
      * (How the game of chess normally starts)
      */
     public void resetBoard() {
         for (int row = 0; row < 8; row++) {
-            for (int column = 0; column < 8; column++) {
-                board[row][column] = null;
-            }
-        }
-        for (int column = 0; column < 8; column++) {
-            board[1][column] = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN);
-            board[6][column] = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN);
+            Arrays.fill(board[row], null);
         }
+        indexed = null;
+        ensureIndexed();
+
         ChessPiece.PieceType[] backRanks = {
                 ChessPiece.PieceType.ROOK,
                 ChessPiece.PieceType.KNIGHT,
@@ -77,22 +389,61 @@ public class ChessBoard {
                 ChessPiece.PieceType.KNIGHT,
                 ChessPiece.PieceType.ROOK
         };
-        for (int column = 0; column < 8; column++) {
-            board[0][column] =  new ChessPiece(ChessGame.TeamColor.WHITE, backRanks[column]);
-            board[7][column] =  new ChessPiece(ChessGame.TeamColor.BLACK, backRanks[column]);
+        for (int column = 1; column <= 8; column++) {
+            addPiece(ChessPosition.of(2, column), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+            addPiece(ChessPosition.of(7, column), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
+            addPiece(ChessPosition.of(1, column), ChessPiece.of(ChessGame.TeamColor.WHITE, backRanks[column - 1]));
+            addPiece(ChessPosition.of(8, column), ChessPiece.of(ChessGame.TeamColor.BLACK, backRanks[column - 1]));
+        }
+    }
+
+    static int square(ChessPosition position) {
+        return (position.getRow() - 1) * 8 + (position.getColumn() - 1);
+    }
+
+    static ChessPosition position(int square) {
+        return ChessPosition.of((square >>> 3) + 1, (square & 7) + 1);
+    }
+
+    private static int index(ChessPiece piece) {
+        return piece.getTeamColor().ordinal() * 6 + piece.getPieceType().ordinal();
+    }
+
+    private void ensureIndexed() {
+        if (indexed == board) {return;}
+        if (pieces == null) {
+            pieces = new long[12];
+            colors = new long[2];
+            kingSquares = new int[2];
+            pieceLists = new int[2][64];
+            pieceCounts = new int[2];
+            listIndex = new int[64];
+        }
+        Arrays.fill(pieces, 0L);
+        Arrays.fill(colors, 0L);
+        occupied = 0L;
+        key = 0L;
+        material = 0L;
+        Arrays.fill(kingSquares, -1);
+        Arrays.fill(pieceCounts, 0);
+        indexed = board;
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = getPiece(square);
+            if (piece != null) {place(square, ChessPiece.of(piece.getTeamColor(), piece.getPieceType()));}
         }
     }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {return true;}
         if (obj == null || getClass() != obj.getClass()) {return false;}
         ChessBoard other = (ChessBoard) obj;
-        return Arrays.deepEquals(board, other.board);
+        if (getKey() != other.getKey()) {return false;}
+        return Arrays.equals(pieces, other.pieces);
     }
     @Override
     public int  hashCode() {
-        return  Arrays.deepHashCode(board);
+        long key = getKey();
+        return  (int) (key ^ (key >>> 32));
     }
 }
-
-
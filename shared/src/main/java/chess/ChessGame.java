@@ -1,8 +1,7 @@
 package chess;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
 import java.util.Objects;
 
 /**
@@ -12,15 +11,44 @@ import java.util.Objects;
  * signature of the existing methods.
  */
 public class ChessGame {
+    private static final int HISTORY_SIZE = 128;
+    private static final int FIFTY_MOVE_PLIES = 100;
+
     private ChessBoard board = new ChessBoard();
     private TeamColor color;
     private ChessPiece.PieceType pieceType;
     private ChessMove move;
 
+    /** Plies since the last capture or pawn move. */
+    private int halfmoveClock;
+    /**
+     * Ring of position keys since the last capture or pawn move, newest at
+     * {@code ringHead}. Positions before such a move can never come back, so the ring
+     * only has to cover the fifty-move window. It is built from {@link #history} when
+     * first needed, so it is not saved with the game.
+     */
+    private transient long[] ring;
+    private transient int ringHead;
+    private transient int ringCount;
+    /**
+     * The live part of the ring, oldest first, which is what is saved with the game.
+     * {@link #makeMove(ChessMove)} brings it up to date; moves tried out with
+     * {@link #applyMove(ChessMove)} are taken back again, so they leave it alone.
+     */
+    private long[] history;
+
+    private transient long[] undoHistory;
+    private transient int undoSize;
+
+    private transient GameStatus status;
+    private transient ChessBoard statusBoard;
+    private transient long statusKey;
+
     public ChessGame() {
         board.resetBoard();
         color = TeamColor.WHITE;
         this.pieceType = pieceType;
+        resetHistory();
     }
 
     /**
@@ -37,6 +65,8 @@ public class ChessGame {
      */
     public void setTeamTurn(TeamColor team) {
         color = team;
+        status = null;
+        resetHistory();
     }
 
     /**
@@ -55,40 +85,21 @@ public class ChessGame {
      * startPosition
      */
     public Collection<ChessMove> validMoves(ChessPosition startPosition) {
-        List<ChessMove> validMoves = new ArrayList<>();
-        ChessPiece piece = board.getPiece(startPosition);
-        ChessBoard currentBoard = this.board;
-        if (piece == null) {return validMoves;}
-
-        Collection<ChessMove> tempMoves = piece.pieceMoves(board, startPosition);
-        for (ChessMove move : tempMoves) {
-            if (isValidMoveForPiece(move, currentBoard)) {
-                validMoves.add(move);
-            }
-        }
-        return validMoves;
+        IntMoveList moves = new IntMoveList(32);
+        MoveGenerator.legalPieceMoves(board, ChessBoard.square(startPosition), moves);
+        return moves.toChessMoves();
     }
 
-    private boolean isValidMoveForPiece(ChessMove move, ChessBoard currentBoard) {
-        ChessPosition tempStart = move.getStartPosition();
-        ChessPosition tempEnd = move.getEndPosition();
-        ChessBoard tempBoard = board.deepCopy();
-        ChessPiece tempPiece = tempBoard.getPiece(tempStart);
-        tempBoard.addPiece(tempStart, null);
-
-        if (canMakeMove(tempBoard, tempEnd, tempPiece)) {
-            tempBoard.addPiece(tempEnd, tempPiece);
-            this.board = tempBoard;
-            boolean result = !isInCheck(tempPiece.getTeamColor());
-            this.board = currentBoard;
-            return result;
-        }
-        return false;
-    }
-
-    private boolean canMakeMove(ChessBoard tempBoard, ChessPosition endPos, ChessPiece piece) {
-        return tempBoard.getPiece(endPos) == null ||
-                tempBoard.getPiece(endPos).getTeamColor() != piece.getTeamColor();
+    /**
+     * Gets every legal move of a team in one generation pass
+     *
+     * @param teamColor the team to get moves for
+     * @return all moves the team could legally make, regardless of whose turn it is
+     */
+    public Collection<ChessMove> allLegalMoves(TeamColor teamColor) {
+        IntMoveList moves = new IntMoveList();
+        MoveGenerator.generateLegal(board, teamColor, moves);
+        return moves.toChessMoves();
     }
 
     /**
@@ -106,14 +117,143 @@ public class ChessGame {
             throw new InvalidMoveException();
         }
 
-        Collection<ChessMove> moves = piece.pieceMoves(board, startPosition);
-
-        if (!moves.contains(move) || isInCheck(piece.getTeamColor())) {
+        IntMoveList moves = new IntMoveList(32);
+        MoveGenerator.legalPieceMoves(board, ChessBoard.square(startPosition), moves);
+        if (!moves.contains(Move.of(board, move))) {
             throw new InvalidMoveException();
         }
 
+        boolean irreversible = piece.getPieceType() == ChessPiece.PieceType.PAWN || board.getPiece(endPosition) != null;
+        loadRing();
         executeMove(startPosition, endPosition, piece, move);
         switchTurns();
+        recordPosition(irreversible);
+        history = positionHistory();
+    }
+
+    /**
+     * Plays a move in place and hands the turn to the other team, without checking
+     * that the move is legal. Pair with {@link #undoMove()} to try a move out.
+     *
+     * @param move chess move to play
+     */
+    public void applyMove(ChessMove move) {
+        boolean irreversible = board.getPiece(move.getEndPosition()) != null
+                || board.getPiece(move.getStartPosition()).getPieceType() == ChessPiece.PieceType.PAWN;
+        loadRing();
+        if (undoHistory == null || undoSize == undoHistory.length) {
+            undoHistory = undoHistory == null ? new long[32] : Arrays.copyOf(undoHistory, undoSize * 2);
+        }
+        undoHistory[undoSize++] = ((long) halfmoveClock << 32) | ringCount;
+
+        board.applyMove(move);
+        switchTurns();
+        recordPosition(irreversible);
+    }
+
+    /**
+     * Takes back the last move played with {@link #applyMove(ChessMove)}
+     */
+    public void undoMove() {
+        board.undoMove();
+        switchTurns();
+        long saved = undoHistory[--undoSize];
+        halfmoveClock = (int) (saved >>> 32);
+        ringCount = (int) saved;
+        ringHead = (ringHead + HISTORY_SIZE - 1) % HISTORY_SIZE;
+    }
+
+    /**
+     * @return plies played since the last capture or pawn move
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * Counts how often the current position has occurred with the same team to move.
+     * Only positions since the last capture or pawn move can match, and those are
+     * capped by the fifty-move rule, so this is a bounded scan over the ring.
+     *
+     * @return how many times the current position has been reached, at least 1
+     */
+    public int repetitionCount() {
+        loadRing();
+        long key = ring[ringHead];
+        int count = 1;
+        for (int back = 2; back < ringCount; back += 2) {
+            if (ring[(ringHead - back + HISTORY_SIZE) % HISTORY_SIZE] == key) {count++;}
+        }
+        return count;
+    }
+
+    /**
+     * @return keys of the positions since the last capture or pawn move, oldest first
+     * and ending with the current one, as used by {@link #repetitionCount()}
+     */
+    public long[] positionHistory() {
+        loadRing();
+        long[] keys = new long[ringCount];
+        for (int i = 0; i < ringCount; i++) {
+            keys[i] = ring[(ringHead - ringCount + 1 + i + HISTORY_SIZE) % HISTORY_SIZE];
+        }
+        return keys;
+    }
+
+    /**
+     * @return an independent game with the same position, turn and history, which can
+     * be searched on another thread while this one goes on
+     */
+    public ChessGame copy() {
+        ChessGame copy = new ChessGame();
+        copy.board = board.deepCopy();
+        copy.color = color;
+        copy.history = positionHistory();
+        copy.halfmoveClock = halfmoveClock;
+        return copy;
+    }
+
+    /**
+     * Makes sure the ring ends with the current position. A game that was just loaded
+     * fills it from the saved {@link #history}; a saved history that does not end with
+     * the position, as in games saved without one, or a ring left behind by a board
+     * changed from outside, starts again from the position.
+     */
+    private void loadRing() {
+        long key = positionKey();
+        if (ring != null && ring[ringHead] == key) {return;}
+        long[] saved = ring == null ? history : null;
+        if (ring == null) {ring = new long[HISTORY_SIZE];}
+        if (saved == null || saved.length == 0 || saved.length > HISTORY_SIZE || saved[saved.length - 1] != key) {
+            saved = new long[]{key};
+            history = saved;
+        }
+        System.arraycopy(saved, 0, ring, 0, saved.length);
+        ringHead = saved.length - 1;
+        ringCount = saved.length;
+    }
+
+    private void recordPosition(boolean irreversible) {
+        if (irreversible) {
+            halfmoveClock = 0;
+            ringCount = 0;
+        } else {
+            halfmoveClock++;
+        }
+        ringHead = (ringHead + 1) % HISTORY_SIZE;
+        ring[ringHead] = positionKey();
+        ringCount = Math.min(ringCount + 1, HISTORY_SIZE);
+    }
+
+    /**
+     * Starts the history again from the current position. The ring is built from it
+     * when first needed, so a game being loaded never builds one it then throws away.
+     */
+    private void resetHistory() {
+        halfmoveClock = 0;
+        ring = null;
+        history = new long[]{positionKey()};
+        undoSize = 0;
     }
 
     private void executeMove(ChessPosition start, ChessPosition end, ChessPiece piece, ChessMove move) {
@@ -122,17 +262,18 @@ public class ChessGame {
 
         // Handle pawn promotion
         if (piece.getPieceType() == ChessPiece.PieceType.PAWN && move.getPromotionPiece() != null) {
-            ChessPiece promotion = new ChessPiece(piece.getTeamColor(), move.getPromotionPiece());
+            ChessPiece promotion = ChessPiece.of(piece.getTeamColor(), move.getPromotionPiece());
             board.addPiece(end, promotion);
         }
     }
 
+    private static TeamColor opponent(TeamColor teamColor) {
+        return teamColor == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
+    }
+
     private void switchTurns() {
-        if (getTeamTurn() == TeamColor.WHITE) {
-            setTeamTurn(TeamColor.BLACK);
-        } else {
-            setTeamTurn(TeamColor.WHITE);
-        }
+        color = opponent(color);
+        status = null;
     }
 
     /**
@@ -142,50 +283,21 @@ public class ChessGame {
      * @return True if the specified team is in check
      */
     public boolean isInCheck(TeamColor teamColor) {
-        ChessPosition kingPos = kingPosition(teamColor);
-        if (kingPos == null) {return false;}
-
-        return check(kingPos, teamColor);
-    }
-
-    private ChessPosition kingPosition(TeamColor teamColor) {
-        for (int i = 0; i < 64; i++) {
-            int row = (i / 8) + 1;
-            int col = (i % 8) + 1;
-            ChessPosition position = new ChessPosition(row, col);
-            ChessPiece piece = board.getPiece(position);
-            if (piece != null && piece.getTeamColor() == teamColor &&
-                    piece.getPieceType() == ChessPiece.PieceType.KING) {
-                return position;
-            }
-        }
-        return null;
-    }
+        int kingSquare = board.getKingSquare(teamColor);
+        if (kingSquare < 0) {return false;}
 
-    private boolean check(ChessPosition targetPos, TeamColor defendingColor) {
-        for (int i = 0; i < 64; i++) {
-            int row = (i / 8) + 1;
-            int col = (i % 8) + 1;
-            ChessPosition position = new ChessPosition(row, col);
-            ChessPiece piece = board.getPiece(position);
-
-            if (piece != null && piece.getTeamColor() != defendingColor) {
-                if (canPieceAttackPosition(piece, position, targetPos)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return board.isSquareAttacked(kingSquare, opponent(teamColor));
     }
 
-    private boolean canPieceAttackPosition(ChessPiece piece, ChessPosition piecePos, ChessPosition targetPos) {
-        Collection<ChessMove> moves = piece.pieceMoves(board, piecePos);
-        for (ChessMove move : moves) {
-            if (move.getEndPosition().equals(targetPos)) {
-                return true;
-            }
-        }
-        return false;
+    /**
+     * Determines if any piece of the given team attacks a square
+     *
+     * @param position  the square to look at
+     * @param attacker  which team's pieces to look for
+     * @return True if a piece of the attacking team attacks the square
+     */
+    public boolean isSquareAttacked(ChessPosition position, TeamColor attacker) {
+        return board.isSquareAttacked(ChessBoard.square(position), attacker);
     }
 
     /**
@@ -195,7 +307,8 @@ public class ChessGame {
      * @return True if the specified team is in checkmate
      */
     public boolean isInCheckmate(TeamColor teamColor) {
-        return !hasValidMoves(teamColor);
+        if (teamColor == color) {return getGameStatus().state() == GameStatus.State.CHECKMATE;}
+        return isInCheck(teamColor) && !hasValidMoves(teamColor);
     }
 
     /**
@@ -206,56 +319,55 @@ public class ChessGame {
      * @return True if the specified team is in stalemate, otherwise false
      */
     public boolean isInStalemate(TeamColor teamColor) {
+        if (teamColor == color) {return getGameStatus().state() == GameStatus.State.STALEMATE;}
         return !isInCheck(teamColor) && !hasValidMoves(teamColor);
     }
 
-    private boolean hasValidMoves(TeamColor teamColor) {
-        for (int i = 0; i < 64; i++) {
-            int row = (i / 8) + 1;
-            int col = (i % 8) + 1;
-            ChessPosition position = new ChessPosition(row, col);
-            ChessPiece piece = board.getPiece(position);
-
-            if (piece != null && piece.getTeamColor() == teamColor) {
-                if (pieceValidMove(piece, position)) {
-                    return true;
-                }
-            }
+    /**
+     * Works out check, checkmate, stalemate and the automatic draws (insufficient
+     * material, threefold repetition, fifty-move rule) for the team to move. The result
+     * is kept until the board or the turn changes, so asking again is free.
+     *
+     * @return the status of the current position
+     */
+    public GameStatus getGameStatus() {
+        long key = positionKey();
+        if (status != null && statusBoard == board && statusKey == key) {return status;}
+
+        boolean inCheck = isInCheck(color);
+        if (!hasValidMoves(color)) {
+            status = inCheck ? GameStatus.checkmate(opponent(color)) : GameStatus.STALEMATE;
+        } else if (board.isInsufficientMaterial()) {
+            status = GameStatus.INSUFFICIENT_MATERIAL;
+        } else if (repetitionCount() >= 3) {
+            status = GameStatus.THREEFOLD_REPETITION;
+        } else if (halfmoveClock >= FIFTY_MOVE_PLIES) {
+            status = GameStatus.FIFTY_MOVE_RULE;
+        } else {
+            status = inCheck ? GameStatus.CHECK : GameStatus.ONGOING;
         }
-        return false;
+        statusBoard = board;
+        statusKey = key;
+        return status;
     }
 
-    private boolean pieceValidMove(ChessPiece piece, ChessPosition position) {
-        Collection<ChessMove> moves = piece.pieceMoves(board, position);
-        ChessBoard currentBoard = this.board;
-
-        for (ChessMove move : moves) {
-            if (valid(move, currentBoard)) {
-                return true;
-            }
-        }
-        return false;
+    private boolean hasValidMoves(TeamColor teamColor) {
+        return MoveGenerator.hasLegalMove(board, teamColor);
     }
 
-    private boolean valid(ChessMove move, ChessBoard currentBoard) {
-        ChessPosition startPosition = move.getStartPosition();
-        ChessPosition endPosition = move.getEndPosition();
-        ChessBoard tempBoard = board.deepCopy();
-        ChessPiece tempPiece = tempBoard.getPiece(startPosition);
-
-        tempBoard.addPiece(startPosition, null);
-        if (canMakeMove(tempBoard, endPosition, tempPiece)) {
-            tempBoard.addPiece(endPosition, tempPiece);
-            this.board = tempBoard;
-            boolean result = !isInCheck(tempPiece.getTeamColor());
-            this.board = currentBoard;
-            return result;
-        }
-        return false;
+    /**
+     * @return a 64-bit Zobrist key for the pieces on the board and the team to move.
+     * Equal positions always share a key; different positions almost never do.
+     */
+    public long positionKey() {
+        long key = board.getKey();
+        return color == TeamColor.BLACK ? key ^ Zobrist.SIDE : key;
     }
 
     public void setBoard(ChessBoard board) {
         this.board = board;
+        status = null;
+        resetHistory();
     }
 
     public ChessBoard getBoard() {
@@ -266,10 +378,13 @@ public class ChessGame {
         if (this == o) {return true;}
         if (o == null || getClass() != o.getClass()) {return false;}
         ChessGame that = (ChessGame) o;
+        if (board != null && that.board != null && positionKey() != that.positionKey()) {return false;}
         return Objects.equals(board, that.board) && color == that.color;
     }
     @Override
     public int hashCode() {
-        return Objects.hash(board, color);
+        if (board == null) {return Objects.hash(color);}
+        long key = positionKey();
+        return (int) (key ^ (key >>> 32));
     }
 }
@@ -0,0 +1,46 @@
+package chess;
+
+/**
+ * Where a game stands for the team to move
+ *
+ * @param state  whether the game goes on and if the team to move is in check
+ * @param winner the team that delivered checkmate, or null if nobody has won
+ */
+public record GameStatus(State state, ChessGame.TeamColor winner) {
+
+    public enum State {
+        ONGOING,
+        CHECK,
+        CHECKMATE,
+        STALEMATE,
+        THREEFOLD_REPETITION,
+        FIFTY_MOVE_RULE,
+        INSUFFICIENT_MATERIAL
+    }
+
+    public static final GameStatus ONGOING = new GameStatus(State.ONGOING, null);
+    public static final GameStatus CHECK = new GameStatus(State.CHECK, null);
+    public static final GameStatus STALEMATE = new GameStatus(State.STALEMATE, null);
+    public static final GameStatus THREEFOLD_REPETITION = new GameStatus(State.THREEFOLD_REPETITION, null);
+    public static final GameStatus FIFTY_MOVE_RULE = new GameStatus(State.FIFTY_MOVE_RULE, null);
+    public static final GameStatus INSUFFICIENT_MATERIAL = new GameStatus(State.INSUFFICIENT_MATERIAL, null);
+
+    public static GameStatus checkmate(ChessGame.TeamColor winner) {
+        return new GameStatus(State.CHECKMATE, winner);
+    }
+
+    /**
+     * @return true if no more moves can be played
+     */
+    public boolean isOver() {
+        return state == State.CHECKMATE || isDraw();
+    }
+
+    /**
+     * @return true if the game ended without a winner
+     */
+    public boolean isDraw() {
+        return state == State.STALEMATE || state == State.THREEFOLD_REPETITION
+                || state == State.FIFTY_MOVE_RULE || state == State.INSUFFICIENT_MATERIAL;
+    }
+}
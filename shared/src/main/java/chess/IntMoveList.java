@@ -0,0 +1,81 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A growable list of packed {@link Move} values backed by an {@code int[]}. Callers
+ * keep one around and {@link #clear()} it between uses so generating moves does not
+ * allocate. As a {@link MoveSink} it accepts every move it is given.
+ */
+public final class IntMoveList implements MoveSink {
+
+    private int[] moves;
+    private int size;
+
+    public IntMoveList() {
+        this(64);
+    }
+
+    public IntMoveList(int capacity) {
+        moves = new int[Math.max(capacity, 8)];
+    }
+
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2);
+        }
+        moves[size++] = move;
+    }
+
+    @Override
+    public boolean accept(int move) {
+        add(move);
+        return true;
+    }
+
+    public int get(int index) {
+        return moves[index];
+    }
+
+    public void set(int index, int move) {
+        moves[index] = move;
+    }
+
+    public void swap(int first, int second) {
+        int move = moves[first];
+        moves[first] = moves[second];
+        moves[second] = move;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public boolean contains(int move) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) {return true;}
+        }
+        return false;
+    }
+
+    /**
+     * Adapter for callers that still work with {@link ChessMove} collections.
+     */
+    public List<ChessMove> toChessMoves() {
+        List<ChessMove> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(Move.toChessMove(moves[i]));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,112 @@
+package chess;
+
+import java.util.SplittableRandom;
+
+/**
+ * Magic bitboard tables for sliding attacks. For each square the relevant blockers are
+ * masked out of the occupancy, multiplied by a magic number and shifted down to an
+ * index into a table of precomputed attack sets, so a rook or bishop attack costs one
+ * multiply and one lookup.
+ * <p>
+ * The magics are found by a seeded random search when the class loads, which takes a
+ * few tens of milliseconds and always yields the same tables.
+ */
+final class Magics {
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] ROOK_MAGICS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] ROOK_OFFSETS = new int[64];
+    private static final long[] ROOK_TABLE;
+
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final long[] BISHOP_MAGICS = new long[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final int[] BISHOP_OFFSETS = new int[64];
+    private static final long[] BISHOP_TABLE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x3A61_C0DEL);
+        ROOK_TABLE = build(true, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_OFFSETS, random);
+        BISHOP_TABLE = build(false, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_OFFSETS, random);
+    }
+
+    private Magics() {
+    }
+
+    static long rook(int square, long occupied) {
+        int index = (int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square]);
+        return ROOK_TABLE[ROOK_OFFSETS[square] + index];
+    }
+
+    static long bishop(int square, long occupied) {
+        int index = (int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square]);
+        return BISHOP_TABLE[BISHOP_OFFSETS[square] + index];
+    }
+
+    private static long[] build(boolean rook, long[] masks, long[] magics, int[] shifts, int[] offsets,
+                                SplittableRandom random) {
+        int size = 0;
+        for (int square = 0; square < 64; square++) {
+            masks[square] = relevantBlockers(square, rook);
+            int bits = Long.bitCount(masks[square]);
+            shifts[square] = 64 - bits;
+            offsets[square] = size;
+            size += 1 << bits;
+        }
+
+        long[] table = new long[size];
+        for (int square = 0; square < 64; square++) {
+            int count = 1 << (64 - shifts[square]);
+            long[] occupancies = new long[count];
+            long[] attacks = new long[count];
+            long subset = 0;
+            for (int i = 0; i < count; i++) {
+                occupancies[i] = subset;
+                attacks[i] = rook ? Attacks.slowRook(square, subset) : Attacks.slowBishop(square, subset);
+                subset = (subset - masks[square]) & masks[square];
+            }
+            magics[square] = findMagic(masks[square], shifts[square], occupancies, attacks, table,
+                    offsets[square], random);
+        }
+        return table;
+    }
+
+    private static long findMagic(long mask, int shift, long[] occupancies, long[] attacks, long[] table,
+                                  int offset, SplittableRandom random) {
+        int count = occupancies.length;
+        int[] epoch = new int[count];
+        for (int attempt = 1; ; attempt++) {
+            long magic = random.nextLong() & random.nextLong() & random.nextLong();
+            if (Long.bitCount((mask * magic) & 0xFF00_0000_0000_0000L) < 6) {continue;}
+
+            boolean fits = true;
+            for (int i = 0; i < count && fits; i++) {
+                int index = (int) ((occupancies[i] * magic) >>> shift);
+                if (epoch[index] < attempt) {
+                    epoch[index] = attempt;
+                    table[offset + index] = attacks[i];
+                } else if (table[offset + index] != attacks[i]) {
+                    fits = false;
+                }
+            }
+            if (fits) {return magic;}
+        }
+    }
+
+    /**
+     * @return the squares whose occupancy can change the attack set: the rays from the
+     * square with the last square before the edge dropped
+     */
+    private static long relevantBlockers(int square, boolean rook) {
+        long mask = 0;
+        for (int direction = 0; direction < 8; direction++) {
+            if (Attacks.isOrthogonal(direction) != rook) {continue;}
+            long ray = Attacks.RAYS[direction][square];
+            if (ray == 0) {continue;}
+            int last = direction < 4 ? 63 - Long.numberOfLeadingZeros(ray) : Long.numberOfTrailingZeros(ray);
+            mask |= ray & ~(1L << last);
+        }
+        return mask;
+    }
+}
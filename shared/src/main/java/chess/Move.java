@@ -0,0 +1,108 @@
+package chess;
+
+/**
+ * Packs a move into a single {@code int} so move generation does not have to create
+ * {@link ChessMove} objects. Squares are indexed 0 for a1 up to 63 for h8.
+ * <pre>
+ * bits  0-5   start square
+ * bits  6-11  end square
+ * bits 12-14  promotion piece type ordinal + 1, or 0 for none
+ * bits 15-17  moving piece type ordinal
+ * bits 18-20  captured piece type ordinal + 1, or 0 for none
+ * bit  21     pawn double step
+ * </pre>
+ * The value {@link #NONE} is never a real move.
+ */
+public final class Move {
+
+    public static final int NONE = 0;
+    public static final int DOUBLE_STEP = 1 << 21;
+
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private Move() {
+    }
+
+    public static int encode(int from, int to, ChessPiece.PieceType moved, ChessPiece captured,
+                             ChessPiece.PieceType promotion) {
+        int move = from | (to << 6) | (moved.ordinal() << 15);
+        if (promotion != null) {move |= (promotion.ordinal() + 1) << 12;}
+        if (captured != null) {move |= (captured.getPieceType().ordinal() + 1) << 18;}
+        return move;
+    }
+
+    /**
+     * Encodes a {@link ChessMove} against the board it is about to be played on.
+     *
+     * @return the packed move, or {@link #NONE} if the start square is empty
+     */
+    public static int of(ChessBoard board, ChessMove move) {
+        int from = ChessBoard.square(move.getStartPosition());
+        int to = ChessBoard.square(move.getEndPosition());
+        ChessPiece piece = board.getPiece(from);
+        if (piece == null) {return NONE;}
+        int encoded = encode(from, to, piece.getPieceType(), board.getPiece(to), move.getPromotionPiece());
+        if (piece.getPieceType() == ChessPiece.PieceType.PAWN && Math.abs(to - from) == 16) {
+            encoded |= DOUBLE_STEP;
+        }
+        return encoded;
+    }
+
+    public static ChessMove toChessMove(int move) {
+        return new ChessMove(ChessBoard.position(from(move)), ChessBoard.position(to(move)), promotion(move));
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    /**
+     * @return the promotion piece type, or null if the move is not a promotion
+     */
+    public static ChessPiece.PieceType promotion(int move) {
+        int code = (move >>> 12) & 7;
+        return code == 0 ? null : TYPES[code - 1];
+    }
+
+    public static ChessPiece.PieceType moved(int move) {
+        return TYPES[(move >>> 15) & 7];
+    }
+
+    /**
+     * @return the captured piece type, or null if the move is not a capture
+     */
+    public static ChessPiece.PieceType captured(int move) {
+        int code = (move >>> 18) & 7;
+        return code == 0 ? null : TYPES[code - 1];
+    }
+
+    public static boolean isCapture(int move) {
+        return ((move >>> 18) & 7) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return ((move >>> 12) & 7) != 0;
+    }
+
+    /**
+     * @return the move in coordinate notation, e.g. {@code e2e4} or {@code a7a8q}
+     */
+    public static String toString(int move) {
+        StringBuilder builder = new StringBuilder(5);
+        appendSquare(builder, from(move));
+        appendSquare(builder, to(move));
+        ChessPiece.PieceType promotion = promotion(move);
+        if (promotion != null) {
+            builder.append(promotion == ChessPiece.PieceType.KNIGHT ? 'n' : Character.toLowerCase(promotion.name().charAt(0)));
+        }
+        return builder.toString();
+    }
+
+    private static void appendSquare(StringBuilder builder, int square) {
+        builder.append((char) ('a' + (square & 7))).append((char) ('1' + (square >>> 3)));
+    }
+}
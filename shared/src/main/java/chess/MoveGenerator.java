@@ -0,0 +1,274 @@
+package chess;
+
+/**
+ * Generates moves as packed {@link Move} values and pushes them into a {@link MoveSink}.
+ * <p>
+ * {@link #generate} and {@link #pieceMoves} are pseudo-legal: they follow how each
+ * piece moves but may leave the mover's king in check. {@link #generateLegal} and
+ * {@link #legalPieceMoves} work out the checking pieces and the pinned pieces once
+ * and only emit moves that keep the king safe, so no move has to be tried on the board.
+ * <p>
+ * Every piece's moves are worked out as a mask of target squares first. That lets
+ * {@link #countLegal} and {@link #hasLegalMove} answer from bit counts and stop at the
+ * first legal move without creating anything.
+ */
+public final class MoveGenerator {
+
+    private static final ChessPiece.PieceType[] PROMOTIONS = {
+            ChessPiece.PieceType.QUEEN,
+            ChessPiece.PieceType.ROOK,
+            ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.KNIGHT
+    };
+
+    private static final long FIRST_ROW = 0xFFL;
+    private static final long LAST_ROW = 0xFFL << 56;
+
+    private static final MoveSink STOP = move -> false;
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Adds the pseudo-legal moves of every piece of one team.
+     *
+     * @return false if the sink asked to stop
+     */
+    public static boolean generate(ChessBoard board, ChessGame.TeamColor side, MoveSink sink) {
+        for (int i = 0; i < board.getPieceCount(side); i++) {
+            int square = board.getPieceSquare(side, i);
+            if (!pieceMoves(board, square, side, board.getPiece(square).getPieceType(), sink)) {return false;}
+        }
+        return true;
+    }
+
+    /**
+     * Adds the pseudo-legal moves of a piece of the given color and type standing on
+     * {@code square}. The piece itself does not have to be on the board.
+     *
+     * @return false if the sink asked to stop
+     */
+    public static boolean pieceMoves(ChessBoard board, int square, ChessGame.TeamColor color,
+                                     ChessPiece.PieceType type, MoveSink sink) {
+        return emit(board, square, type, targets(board, square, color, type, -1L), sink);
+    }
+
+    /**
+     * Adds every legal move of one team. A team without a king has nothing to protect,
+     * so all of its pseudo-legal moves count as legal.
+     *
+     * @return false if the sink asked to stop
+     */
+    public static boolean generateLegal(ChessBoard board, ChessGame.TeamColor side, MoveSink sink) {
+        return generateLegal(board, side, -1L, sink);
+    }
+
+    /**
+     * Adds the legal captures and promotions of one team, the moves a quiescence search
+     * looks at.
+     *
+     * @return false if the sink asked to stop
+     */
+    public static boolean generateLegalNoisy(ChessBoard board, ChessGame.TeamColor side, MoveSink sink) {
+        return generateLegal(board, side, board.getOccupancy(opponent(side)), sink);
+    }
+
+    /**
+     * @param filter only squares in this mask may be moved to, except that pawns may
+     *               always move onto the first and last rows
+     */
+    private static boolean generateLegal(ChessBoard board, ChessGame.TeamColor side, long filter, MoveSink sink) {
+        long pawnFilter = filter | FIRST_ROW | LAST_ROW;
+        int king = board.getKingSquare(side);
+        if (king < 0) {
+            for (int i = 0; i < board.getPieceCount(side); i++) {
+                int square = board.getPieceSquare(side, i);
+                ChessPiece.PieceType type = board.getPiece(square).getPieceType();
+                long allowed = type == ChessPiece.PieceType.PAWN ? pawnFilter : filter;
+                if (!emit(board, square, type, targets(board, square, side, type, allowed), sink)) {return false;}
+            }
+            return true;
+        }
+        ChessGame.TeamColor enemy = opponent(side);
+        if (!emit(board, king, ChessPiece.PieceType.KING, kingTargets(board, king, side, enemy) & filter, sink)) {
+            return false;
+        }
+
+        long checkMask = checkMask(board, king, enemy);
+        if (checkMask == 0) {return true;}
+        long pinned = pinnedPieces(board, king, side, enemy);
+        for (int i = 0; i < board.getPieceCount(side); i++) {
+            int square = board.getPieceSquare(side, i);
+            if (square == king) {continue;}
+            ChessPiece.PieceType type = board.getPiece(square).getPieceType();
+            long allowed = allowed(king, square, checkMask, pinned) & (type == ChessPiece.PieceType.PAWN ? pawnFilter : filter);
+            if (!emit(board, square, type, targets(board, square, side, type, allowed), sink)) {return false;}
+        }
+        return true;
+    }
+
+    /**
+     * Adds the legal moves of the piece standing on {@code square}, if any.
+     *
+     * @return false if the sink asked to stop
+     */
+    public static boolean legalPieceMoves(ChessBoard board, int square, MoveSink sink) {
+        ChessPiece piece = board.getPiece(square);
+        if (piece == null) {return true;}
+        ChessGame.TeamColor side = piece.getTeamColor();
+        int king = board.getKingSquare(side);
+        if (king < 0) {return pieceMoves(board, square, side, piece.getPieceType(), sink);}
+        ChessGame.TeamColor enemy = opponent(side);
+        if (square == king) {
+            return emit(board, king, ChessPiece.PieceType.KING, kingTargets(board, king, side, enemy), sink);
+        }
+        long checkMask = checkMask(board, king, enemy);
+        long allowed = checkMask == 0 ? 0L : allowed(king, square, checkMask, pinnedPieces(board, king, side, enemy));
+        return emit(board, square, piece.getPieceType(), targets(board, square, side, piece.getPieceType(), allowed),
+                sink);
+    }
+
+    /**
+     * @return true if the team has at least one legal move; stops at the first one found
+     */
+    public static boolean hasLegalMove(ChessBoard board, ChessGame.TeamColor side) {
+        return !generateLegal(board, side, STOP);
+    }
+
+    /**
+     * Counts the legal moves of one team from the target masks, without producing them.
+     */
+    public static int countLegal(ChessBoard board, ChessGame.TeamColor side) {
+        int king = board.getKingSquare(side);
+        long checkMask = -1L;
+        long pinned = 0L;
+        int count = 0;
+        if (king >= 0) {
+            ChessGame.TeamColor enemy = opponent(side);
+            count += Long.bitCount(kingTargets(board, king, side, enemy));
+            checkMask = checkMask(board, king, enemy);
+            if (checkMask == 0) {return count;}
+            pinned = pinnedPieces(board, king, side, enemy);
+        }
+        for (int i = 0; i < board.getPieceCount(side); i++) {
+            int square = board.getPieceSquare(side, i);
+            if (square == king) {continue;}
+            ChessPiece.PieceType type = board.getPiece(square).getPieceType();
+            long targets = targets(board, square, side, type, king < 0 ? -1L : allowed(king, square, checkMask, pinned));
+            count += Long.bitCount(targets);
+            if (type == ChessPiece.PieceType.PAWN) {
+                count += 3 * Long.bitCount(targets & (FIRST_ROW | LAST_ROW));
+            }
+        }
+        return count;
+    }
+
+    private static long allowed(int king, int square, long checkMask, long pinned) {
+        return (pinned & (1L << square)) != 0 ? checkMask & Attacks.LINE[king][square] : checkMask;
+    }
+
+    /**
+     * @return the squares a non-king move must land on: everything when not in check,
+     * the checker and the squares in between for a single check, nothing for a double check
+     */
+    private static long checkMask(ChessBoard board, int king, ChessGame.TeamColor enemy) {
+        long checkers = board.attackersTo(king, enemy, board.getOccupancy());
+        if (checkers == 0) {return -1L;}
+        if ((checkers & (checkers - 1)) != 0) {return 0L;}
+        return checkers | Attacks.BETWEEN[king][Long.numberOfTrailingZeros(checkers)];
+    }
+
+    private static long pinnedPieces(ChessBoard board, int king, ChessGame.TeamColor side,
+                                     ChessGame.TeamColor enemy) {
+        long occupied = board.getOccupancy();
+        long own = board.getOccupancy(side);
+        long queens = board.getPieces(enemy, ChessPiece.PieceType.QUEEN);
+        long straight = board.getPieces(enemy, ChessPiece.PieceType.ROOK) | queens;
+        long diagonal = board.getPieces(enemy, ChessPiece.PieceType.BISHOP) | queens;
+        long pinned = 0L;
+        for (int direction = 0; direction < 8; direction++) {
+            long sliders = Attacks.isOrthogonal(direction) ? straight : diagonal;
+            if ((Attacks.RAYS[direction][king] & sliders) == 0) {continue;}
+            int first = Attacks.firstBlocker(direction, king, occupied);
+            if (first < 0 || (own & (1L << first)) == 0) {continue;}
+            int second = Attacks.firstBlocker(direction, first, occupied);
+            if (second >= 0 && (sliders & (1L << second)) != 0) {
+                pinned |= 1L << first;
+            }
+        }
+        return pinned;
+    }
+
+    private static long kingTargets(ChessBoard board, int king, ChessGame.TeamColor side,
+                                    ChessGame.TeamColor enemy) {
+        long withoutKing = board.getOccupancy() & ~(1L << king);
+        long candidates = Attacks.KING[king] & ~board.getOccupancy(side);
+        long targets = 0L;
+        while (candidates != 0) {
+            int to = Long.numberOfTrailingZeros(candidates);
+            candidates &= candidates - 1;
+            if (board.attackersTo(to, enemy, withoutKing) == 0) {
+                targets |= 1L << to;
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * @return the squares a piece can move to, limited to {@code allowed}
+     */
+    private static long targets(ChessBoard board, int square, ChessGame.TeamColor color,
+                                ChessPiece.PieceType type, long allowed) {
+        long open = ~board.getOccupancy(color) & allowed;
+        long occupied = board.getOccupancy();
+        return switch (type) {
+            case KING -> Attacks.KING[square] & open;
+            case KNIGHT -> Attacks.KNIGHT[square] & open;
+            case BISHOP -> Attacks.bishop(square, occupied) & open;
+            case ROOK -> Attacks.rook(square, occupied) & open;
+            case QUEEN -> (Attacks.rook(square, occupied) | Attacks.bishop(square, occupied)) & open;
+            case PAWN -> pawnTargets(board, square, color) & allowed;
+        };
+    }
+
+    private static long pawnTargets(ChessBoard board, int from, ChessGame.TeamColor color) {
+        boolean white = color == ChessGame.TeamColor.WHITE;
+        int forward = white ? 8 : -8;
+        long occupied = board.getOccupancy();
+        long targets = Attacks.PAWN[color.ordinal()][from] & board.getOccupancy(opponent(color));
+
+        int to = from + forward;
+        if (to >= 0 && to < 64 && (occupied & (1L << to)) == 0) {
+            targets |= 1L << to;
+            int doubleStep = to + forward;
+            if ((from >>> 3) == (white ? 1 : 6) && (occupied & (1L << doubleStep)) == 0) {
+                targets |= 1L << doubleStep;
+            }
+        }
+        return targets;
+    }
+
+    private static boolean emit(ChessBoard board, int from, ChessPiece.PieceType type, long targets, MoveSink sink) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            ChessPiece captured = board.getPiece(to);
+            if (type != ChessPiece.PieceType.PAWN) {
+                if (!sink.accept(Move.encode(from, to, type, captured, null))) {return false;}
+            } else if (to < 8 || to >= 56) {
+                for (ChessPiece.PieceType promotion : PROMOTIONS) {
+                    if (!sink.accept(Move.encode(from, to, type, captured, promotion))) {return false;}
+                }
+            } else {
+                int move = Move.encode(from, to, type, captured, null);
+                if (Math.abs(to - from) == 16) {move |= Move.DOUBLE_STEP;}
+                if (!sink.accept(move)) {return false;}
+            }
+        }
+        return true;
+    }
+
+    private static ChessGame.TeamColor opponent(ChessGame.TeamColor color) {
+        return color == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+    }
+}
@@ -0,0 +1,15 @@
+package chess;
+
+/**
+ * Receives packed {@link Move} values as the generator produces them, so callers can
+ * collect, count or inspect moves without an intermediate collection.
+ */
+@FunctionalInterface
+public interface MoveSink {
+
+    /**
+     * @param move the generated move
+     * @return true to keep generating, false to stop right away
+     */
+    boolean accept(int move);
+}
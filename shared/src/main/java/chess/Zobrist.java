@@ -0,0 +1,35 @@
+package chess;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing. A position's key is the XOR of the key of every
+ * piece on its square, plus {@link #SIDE} when black is to move, so moving a piece
+ * only takes a couple of XORs. The seed is fixed so keys are stable across runs.
+ */
+public final class Zobrist {
+
+    /** PIECES[color * 6 + type ordinal][square] */
+    static final long[][] PIECES = new long[12][64];
+    public static final long SIDE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5A0B_71C7L);
+        for (long[] keys : PIECES) {
+            for (int square = 0; square < 64; square++) {
+                keys[square] = random.nextLong();
+            }
+        }
+        SIDE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * @return the key of a piece standing on a square, 0 for a1 up to 63 for h8
+     */
+    public static long piece(ChessGame.TeamColor color, ChessPiece.PieceType type, int square) {
+        return PIECES[color.ordinal() * 6 + type.ordinal()][square];
+    }
+}
@@ -0,0 +1,79 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.eval.Evaluator;
+import chess.eval.TaperedEvaluator;
+import chess.tablebase.Tablebase;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Negamax alpha-beta search with iterative deepening. Each search works on a single
+ * copy of the game's board and plays moves in place with
+ * {@link ChessBoard#applyMove(int)} / {@link ChessBoard#undoMove()}, with per-ply move
+ * lists and principal variation tables allocated once up front, so the tree itself
+ * allocates nothing.
+ * <p>
+ * Results are kept in a {@link TranspositionTable}, which supplies the first move to
+ * try at each node and cuts off nodes already searched deeply enough. Nodes after the
+ * first move are searched with a null window (principal variation search) and only
+ * re-searched when they turn out better. Null-move pruning, late move reductions,
+ * futility pruning and razoring narrow the tree further as set by a
+ * {@link SearchConfig}. The table is the only state the engine keeps
+ * between searches, and it is safe to share, so one engine can serve several games.
+ * <p>
+ * Draws by repetition (against the game's history as well as the search path), the
+ * fifty-move rule and insufficient material are scored as {@link Score#DRAW}. Other
+ * leaves are scored by an {@link Evaluator}, a fresh one per search, or looked up exactly
+ * in a {@link Tablebase} when one covers the material left.
+ */
+public class AlphaBetaEngine implements Engine {
+
+    static final int DEFAULT_TABLE_MEGABYTES = 16;
+
+    private final TranspositionTable table;
+    private final Supplier<? extends Evaluator> evaluators;
+    private final SearchConfig config;
+    private final Tablebase tablebase;
+
+    public AlphaBetaEngine() {
+        this(new TranspositionTable(DEFAULT_TABLE_MEGABYTES));
+    }
+
+    public AlphaBetaEngine(TranspositionTable table) {
+        this(table, TaperedEvaluator::new);
+    }
+
+    public AlphaBetaEngine(TranspositionTable table, Supplier<? extends Evaluator> evaluators) {
+        this(table, evaluators, SearchConfig.DEFAULT);
+    }
+
+    public AlphaBetaEngine(TranspositionTable table, Supplier<? extends Evaluator> evaluators, SearchConfig config) {
+        this(table, evaluators, config, Tablebase.NONE);
+    }
+
+    /**
+     * @param tablebase probed at every node below the root for exact endgame results
+     */
+    public AlphaBetaEngine(TranspositionTable table, Supplier<? extends Evaluator> evaluators, SearchConfig config,
+                           Tablebase tablebase) {
+        this.table = table;
+        this.evaluators = evaluators;
+        this.config = config;
+        this.tablebase = tablebase;
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    @Override
+    public SearchResult search(ChessGame game, SearchLimits limits, SearchListener listener, AtomicBoolean stop) {
+        table.newSearch();
+        return new Searcher(game, limits, table, evaluators.get(), config, tablebase, stop, new AtomicLong(), true)
+                .run(listener);
+    }
+}
@@ -0,0 +1,122 @@
+package chess.engine;
+
+import chess.Fen;
+import chess.eval.TaperedEvaluator;
+
+import java.util.List;
+
+/**
+ * Searches a fixed set of positions to a fixed depth on a fresh single-threaded engine
+ * and reports nodes and time, optionally with parts of the {@link SearchConfig}
+ * switched off. The node total only changes when the search itself
+ * changes, so it works as a signature for search changes and as a measure of how much
+ * a change prunes.
+ * <p>
+ * With {@code --smp} it instead reports how long {@link LazySmpEngine} takes to reach
+ * the depth with 1, 2 and 4 threads.
+ */
+public final class Bench {
+
+    public static final int DEFAULT_DEPTH = 7;
+
+    public static final List<String> POSITIONS = List.of(
+            Fen.START,
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "r1bq1rk1/pp2ppbp/2np1np1/8/3NP3/2N1BP2/PPPQ2PP/R3KB1R w - - 0 1",
+            "r2q1rk1/pp1bbppp/2n1pn2/3p4/2PP4/2N1PN2/PP1BBPPP/R2Q1RK1 b - - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1",
+            "8/8/4k3/8/2p5/8/B2K4/8 w - - 0 1",
+            "r1b2rk1/2q1bppp/p2ppn2/1p6/3BPP2/2NB4/PPPQ2PP/R4R1K w - - 0 1"
+    );
+
+    private Bench() {
+    }
+
+    public record Result(long nodes, long nanos) {
+        public long nodesPerSecond() {
+            return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+        }
+    }
+
+    public static Result run(int depth, SearchConfig config, boolean verbose) {
+        long nodes = 0;
+        long nanos = 0;
+        for (String fen : POSITIONS) {
+            AlphaBetaEngine engine = new AlphaBetaEngine(new TranspositionTable(AlphaBetaEngine.DEFAULT_TABLE_MEGABYTES),
+                    TaperedEvaluator::new, config);
+            SearchResult result = engine.search(Fen.parse(fen), SearchLimits.depth(depth));
+            nodes += result.nodes();
+            nanos += result.nanos();
+            if (verbose) {
+                System.out.printf("%-72s %s%n", fen, result);
+            }
+        }
+        return new Result(nodes, nanos);
+    }
+
+    /**
+     * Searches every position to the depth on a fresh {@link LazySmpEngine} with the
+     * given number of threads. The table has the default size whatever the thread
+     * count, so runs with different counts differ only in the threads.
+     *
+     * @return nodes searched by all the threads and the time they took to reach the depth
+     */
+    public static Result timeToDepth(int threads, int depth, boolean verbose) {
+        long nodes = 0;
+        long nanos = 0;
+        for (String fen : POSITIONS) {
+            try (LazySmpEngine engine = new LazySmpEngine(threads,
+                    new TranspositionTable(AlphaBetaEngine.DEFAULT_TABLE_MEGABYTES))) {
+                SearchResult result = engine.search(Fen.parse(fen), SearchLimits.depth(depth));
+                nodes += result.nodes();
+                nanos += result.nanos();
+                if (verbose) {
+                    System.out.printf("%d threads  %-72s %s%n", threads, fen, result);
+                }
+            }
+        }
+        return new Result(nodes, nanos);
+    }
+
+    /**
+     * Usage: {@code Bench [depth] [--smp] [--no-null] [--no-lmr] [--no-futility] [--no-razoring] [--plain]},
+     * where the flags switch off parts of the {@link SearchConfig} and {@code --plain}
+     * switches off all of them.
+     */
+    public static void main(String[] args) {
+        int depth = DEFAULT_DEPTH;
+        SearchConfig config = SearchConfig.DEFAULT;
+        boolean smp = false;
+        for (String arg : args) {
+            config = switch (arg) {
+                case "--smp" -> {
+                    smp = true;
+                    yield config;
+                }
+                case "--no-null" -> config.withNullMove(false);
+                case "--no-lmr" -> config.withLateMoveReductions(false);
+                case "--no-futility" -> config.withFutility(false);
+                case "--no-razoring" -> config.withRazoring(false);
+                case "--plain" -> SearchConfig.NONE;
+                default -> {
+                    depth = Integer.parseInt(arg);
+                    yield config;
+                }
+            };
+        }
+        if (smp) {
+            // One untimed pass first, so the first count timed is not the one warming up
+            timeToDepth(1, depth, false);
+            for (int threads : new int[]{1, 2, 4}) {
+                Result result = timeToDepth(threads, depth, false);
+                System.out.printf("threads %d  depth %d  %.1f ms  nodes %,d%n", threads, depth, result.nanos() / 1e6,
+                        result.nodes());
+            }
+            return;
+        }
+        Result result = run(depth, config, true);
+        System.out.printf("depth %d  nodes %,d  %.1f ms  %,d nps%n", depth, result.nodes(), result.nanos() / 1e6,
+                result.nodesPerSecond());
+    }
+}
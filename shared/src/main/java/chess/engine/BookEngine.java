@@ -0,0 +1,47 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Plays from an {@link OpeningBook} while the game is still in it and hands every
+ * other position to another engine. A book move comes back as a
+ * {@link SearchResult#bookMove book result} without a score, and the listener is not
+ * called for it.
+ */
+public class BookEngine implements Engine {
+
+    private final OpeningBook book;
+    private final Engine engine;
+    private final OpeningBook.Selection selection;
+
+    /**
+     * Picks book moves at random in proportion to their weight, for variety between games.
+     */
+    public BookEngine(OpeningBook book, Engine engine) {
+        this(book, engine, OpeningBook.Selection.WEIGHTED);
+    }
+
+    public BookEngine(OpeningBook book, Engine engine, OpeningBook.Selection selection) {
+        this.book = book;
+        this.engine = engine;
+        this.selection = selection;
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    @Override
+    public SearchResult search(ChessGame game, SearchLimits limits, SearchListener listener, AtomicBoolean stop) {
+        long start = System.nanoTime();
+        ChessMove move = book.probe(game, selection, ThreadLocalRandom.current());
+        if (move == null) {
+            return engine.search(game, limits, listener, stop);
+        }
+        return SearchResult.bookMove(move, System.nanoTime() - start);
+    }
+}
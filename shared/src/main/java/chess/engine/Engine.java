@@ -0,0 +1,30 @@
+package chess.engine;
+
+import chess.ChessGame;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Picks a move for the team to move in a game. Implementations never modify the game
+ * they are given.
+ */
+public interface Engine {
+
+    /**
+     * @param listener told about each finished iteration as the search deepens, may be null
+     * @param stop     set from any thread to end the search early; the best move found
+     *                 so far is still returned. Engines may set it themselves to stop
+     *                 their own helper threads.
+     * @return the best move found within the limits; its move is null if the team to
+     * move has no legal move
+     */
+    SearchResult search(ChessGame game, SearchLimits limits, SearchListener listener, AtomicBoolean stop);
+
+    default SearchResult search(ChessGame game, SearchLimits limits, SearchListener listener) {
+        return search(game, limits, listener, new AtomicBoolean());
+    }
+
+    default SearchResult search(ChessGame game, SearchLimits limits) {
+        return search(game, limits, null);
+    }
+}
@@ -0,0 +1,138 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.eval.Evaluator;
+import chess.eval.TaperedEvaluator;
+import chess.tablebase.Tablebase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Lazy SMP: the calling thread runs the main search while helper threads search the
+ * same position independently. They share nothing but the transposition table, the
+ * stop flag and the node count. Each helper skips a different pattern of depths, spread
+ * by its index as in other Lazy SMP engines, so at any moment the threads are spread
+ * over several depths and fill the table with results the main search picks up instead
+ * of duplicating its work.
+ * <p>
+ * Only the main search's result is returned and only it enforces the limits, so with
+ * one thread this is exactly {@link AlphaBetaEngine} and just as deterministic.
+ * Searches on one instance run one at a time since they share the helper threads;
+ * {@link #close()} releases the threads.
+ */
+public class LazySmpEngine implements Engine, AutoCloseable {
+
+    /**
+     * Skip patterns for helpers in turn: helper {@code i} uses entry {@code (i - 1) % 20}.
+     * The first two helpers take odd and even depths, the next four take runs of two
+     * depths at four offsets, and so on.
+     */
+    private static final int[] SKIP_SIZE = {1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 3, 3, 4, 4, 4, 4, 4, 4, 4, 4};
+    private static final int[] SKIP_PHASE = {0, 1, 0, 1, 2, 3, 0, 1, 2, 3, 4, 5, 0, 1, 2, 3, 4, 5, 6, 7};
+
+    private final TranspositionTable table;
+    private final Supplier<? extends Evaluator> evaluators;
+    private final SearchConfig config;
+    private final Tablebase tablebase;
+    private final int threads;
+    private final ExecutorService helpers;
+
+    public LazySmpEngine(int threads) {
+        this(threads, new TranspositionTable(AlphaBetaEngine.DEFAULT_TABLE_MEGABYTES * threads));
+    }
+
+    /**
+     * @param threads total search threads including the caller's, at least 1
+     */
+    public LazySmpEngine(int threads, TranspositionTable table) {
+        this(threads, table, TaperedEvaluator::new);
+    }
+
+    /**
+     * @param evaluators called once per search thread for its own evaluator
+     */
+    public LazySmpEngine(int threads, TranspositionTable table, Supplier<? extends Evaluator> evaluators) {
+        this(threads, table, evaluators, SearchConfig.DEFAULT);
+    }
+
+    public LazySmpEngine(int threads, TranspositionTable table, Supplier<? extends Evaluator> evaluators,
+                         SearchConfig config) {
+        this(threads, table, evaluators, config, Tablebase.NONE);
+    }
+
+    public LazySmpEngine(int threads, TranspositionTable table, Supplier<? extends Evaluator> evaluators,
+                         SearchConfig config, Tablebase tablebase) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one search thread: " + threads);
+        }
+        this.table = table;
+        this.evaluators = evaluators;
+        this.config = config;
+        this.tablebase = tablebase;
+        this.threads = threads;
+        this.helpers = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, runnable -> {
+            Thread thread = new Thread(runnable, "lazy-smp-helper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    @Override
+    public synchronized SearchResult search(ChessGame game, SearchLimits limits, SearchListener listener,
+                                            AtomicBoolean stop) {
+        table.newSearch();
+        AtomicLong nodes = new AtomicLong();
+        Searcher main = new Searcher(game, limits, table, evaluators.get(), config, tablebase, stop, nodes, true);
+
+        List<Future<?>> running = new ArrayList<>(threads - 1);
+        for (int i = 1; i < threads; i++) {
+            Searcher helper = new Searcher(game, limits, table, evaluators.get(), config, tablebase, stop, nodes,
+                    false);
+            int pattern = (i - 1) % SKIP_SIZE.length;
+            running.add(helpers.submit(() -> helper.run(SKIP_SIZE[pattern], SKIP_PHASE[pattern], null)));
+        }
+        try {
+            return main.run(listener);
+        } finally {
+            stop.set(true);
+            for (Future<?> helper : running) {
+                awaitQuietly(helper);
+            }
+        }
+    }
+
+    private static void awaitQuietly(Future<?> future) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                future.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (Exception e) {
+                break;
+            }
+        }
+        if (interrupted) {Thread.currentThread().interrupt();}
+    }
+
+    @Override
+    public void close() {
+        if (helpers != null) {helpers.shutdownNow();}
+    }
+}
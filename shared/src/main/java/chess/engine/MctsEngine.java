@@ -0,0 +1,499 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.IntMoveList;
+import chess.Move;
+import chess.MoveGenerator;
+import chess.Zobrist;
+import chess.eval.Evaluator;
+import chess.eval.TaperedEvaluator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Monte Carlo tree search: each playout walks down the tree choosing moves by UCT,
+ * grows it by one node and scores that node with a short capture search instead of a
+ * random game, then backs the result up as a win probability. The move played most
+ * often at the root is the answer. It plays looser, more varied chess than
+ * {@link AlphaBetaEngine} for the same work, which suits the easier bot levels.
+ * <p>
+ * Several workers share one tree, the caller's thread and the rest on a
+ * {@link ForkJoinPool}. A worker counts a visit to a node as soon as it steps into it
+ * and only adds the result later, so until then the visit looks like a loss and the
+ * other workers spread out to other moves instead of following it.
+ * <p>
+ * A search stops at the node budget, the time budget or the stop flag, and
+ * {@link SearchLimits#depth()} caps how deep the tree grows. Without a node or time
+ * budget a search runs {@value #DEFAULT_PLAYOUTS} playouts. The tree is kept after a
+ * search, and the next search reuses the part below its position if that position
+ * was reached in the tree within two plies, as it is for the engine's next move in the
+ * same game. Searches on one instance run one at a time, so give each game its own
+ * engine to keep the reuse.
+ */
+public class MctsEngine implements Engine {
+
+    public static final int DEFAULT_PLAYOUTS = 20_000;
+    public static final double DEFAULT_EXPLORATION = 1.4;
+
+    private static final int FIFTY_MOVE_PLIES = 100;
+    /** Capture searches at leaves go no deeper than this. */
+    private static final int QUIESCENCE_PLIES = 32;
+    /** Centipawns for which a win probability of 1 / (1 + e^-1) is expected. */
+    private static final double WIN_SCALE = 400;
+    private static final double MAX_PROBABILITY = 0.999;
+    /** Plies below the old root searched for the new one. */
+    private static final int REUSE_PLIES = 2;
+    private static final int CHECK_INTERVAL = 32;
+    /** The first intermediate result is reported after this many playouts, then after every doubling. */
+    private static final long FIRST_REPORT = 1024;
+
+    private final ForkJoinPool pool;
+    private final int workers;
+    private final Supplier<? extends Evaluator> evaluators;
+    private final double exploration;
+
+    /** Tree of the last search, guarded by the instance lock. */
+    private Node tree;
+
+    /**
+     * Uses every core through the common pool.
+     */
+    public MctsEngine() {
+        this(ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param workers playouts run at once, including the caller's; the others are
+     *                submitted to the pool
+     */
+    public MctsEngine(ForkJoinPool pool, int workers) {
+        this(pool, workers, TaperedEvaluator::new);
+    }
+
+    /**
+     * @param evaluators called once per worker for its own evaluator
+     */
+    public MctsEngine(ForkJoinPool pool, int workers, Supplier<? extends Evaluator> evaluators) {
+        this(pool, workers, evaluators, DEFAULT_EXPLORATION);
+    }
+
+    /**
+     * @param exploration weight of the UCT exploration term; higher values try more
+     *                    moves, lower values settle sooner on the best looking one
+     */
+    public MctsEngine(ForkJoinPool pool, int workers, Supplier<? extends Evaluator> evaluators, double exploration) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Need at least one worker: " + workers);
+        }
+        if (!(exploration >= 0)) {
+            throw new IllegalArgumentException("Exploration must not be negative: " + exploration);
+        }
+        this.pool = pool;
+        this.workers = workers;
+        this.evaluators = evaluators;
+        this.exploration = exploration;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    @Override
+    public synchronized SearchResult search(ChessGame game, SearchLimits limits, SearchListener listener,
+                                            AtomicBoolean stop) {
+        long start = System.nanoTime();
+        long key = game.positionKey();
+        Node root = reusable(key);
+        if (root == null) {
+            root = new Node(Move.NONE);
+            root.key = key;
+        }
+        tree = root;
+
+        long budget = limits.nodes() > 0 ? limits.nodes() : limits.millis() > 0 ? Long.MAX_VALUE : DEFAULT_PLAYOUTS;
+        long deadline = limits.millis() > 0 ? start + limits.millis() * 1_000_000L : Long.MAX_VALUE;
+        AtomicLong playouts = new AtomicLong();
+        Worker main = new Worker(game, root, limits.depth());
+        // One playout before anything can stop the search, so the root has moves to choose from
+        main.playout();
+        playouts.incrementAndGet();
+        if (root.terminal) {
+            int score = root.terminalValue == 0 ? -Score.MATE : Score.DRAW;
+            return new SearchResult(null, List.of(), score, 0, 1, System.nanoTime() - start);
+        }
+
+        List<ForkJoinTask<?>> running = new ArrayList<>(workers - 1);
+        for (int i = 1; i < workers; i++) {
+            Worker helper = new Worker(game, root, limits.depth());
+            running.add(pool.submit(() -> {
+                while (!stop.get() && playouts.getAndIncrement() < budget) {
+                    helper.playout();
+                }
+            }));
+        }
+        try {
+            long nextReport = FIRST_REPORT;
+            for (int own = 1; !stop.get(); own++) {
+                long done = playouts.getAndIncrement();
+                if (done >= budget) {break;}
+                main.playout();
+                if (own % CHECK_INTERVAL == 0 && System.nanoTime() >= deadline) {break;}
+                if (listener != null && done >= nextReport) {
+                    listener.onIteration(result(root, Math.min(done, budget), start));
+                    nextReport *= 2;
+                }
+            }
+        } finally {
+            stop.set(true);
+            for (ForkJoinTask<?> helper : running) {
+                helper.quietlyJoin();
+            }
+        }
+        SearchResult result = result(root, Math.min(playouts.get(), budget), start);
+        if (listener != null) {listener.onIteration(result);}
+        return result;
+    }
+
+    /**
+     * @return total visits to the moves at the root of the kept tree
+     */
+    synchronized long treeVisits() {
+        if (tree == null || tree.children == null) {return 0;}
+        long visits = 0;
+        for (Node child : tree.children) {
+            visits += child.visits;
+        }
+        return visits;
+    }
+
+    /**
+     * @return the node of the kept tree for the position with this key, if it has been
+     * expanded within {@link #REUSE_PLIES} of the root
+     */
+    private Node reusable(long key) {
+        List<Node> level = tree == null ? List.of() : List.of(tree);
+        for (int ply = 0; ply <= REUSE_PLIES && !level.isEmpty(); ply++) {
+            List<Node> next = new ArrayList<>();
+            for (Node node : level) {
+                if (node.children == null) {continue;}
+                if (node.key == key) {return node;}
+                next.addAll(List.of(node.children));
+            }
+            level = next;
+        }
+        return null;
+    }
+
+    private SearchResult result(Node root, long playouts, long start) {
+        List<ChessMove> line = new ArrayList<>();
+        Node first = null;
+        double wins = 0;
+        int visits = 0;
+        for (Node node = root; node != null; ) {
+            Node next;
+            synchronized (node) {
+                next = mostVisited(node);
+                if (next != null && first == null) {
+                    first = next;
+                    wins = next.wins;
+                    visits = next.visits;
+                }
+            }
+            if (next != null) {line.add(Move.toChessMove(next.move));}
+            node = next;
+        }
+        int score;
+        if (first == null) {
+            score = Score.DRAW;
+        } else if (first.terminal && first.terminalValue == 0) {
+            score = Score.MATE - 1;
+        } else {
+            double probability = Math.clamp(wins / Math.max(visits, 1), 1 - MAX_PROBABILITY, MAX_PROBABILITY);
+            score = (int) Math.round(WIN_SCALE * Math.log(probability / (1 - probability)));
+        }
+        return new SearchResult(first == null ? null : line.get(0), List.copyOf(line), score, line.size(), playouts,
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Must be called holding the node's lock.
+     */
+    private static Node mostVisited(Node node) {
+        if (node.children == null) {return null;}
+        Node best = null;
+        for (Node child : node.children) {
+            if (child.visits > 0 && (best == null || child.visits > best.visits)) {best = child;}
+        }
+        return best;
+    }
+
+    /**
+     * Picks the child with the highest upper confidence bound and counts the visit
+     * right away. Children never visited come first, in the order they were added.
+     */
+    private Node select(Node node) {
+        synchronized (node) {
+            long total = 0;
+            for (Node child : node.children) {
+                total += child.visits;
+            }
+            double logTotal = Math.log(Math.max(total, 1));
+            Node best = null;
+            double bestBound = Double.NEGATIVE_INFINITY;
+            for (Node child : node.children) {
+                if (child.visits == 0) {
+                    best = child;
+                    break;
+                }
+                double bound = child.wins / child.visits + exploration * Math.sqrt(logTotal / child.visits);
+                if (bound > bestBound) {
+                    bestBound = bound;
+                    best = child;
+                }
+            }
+            best.visits++;
+            return best;
+        }
+    }
+
+    /**
+     * A position in the tree. Its children, and their visits and wins, are guarded by
+     * its lock; {@link #key} and {@link #terminal} are written once, under the lock,
+     * before the children are.
+     */
+    static final class Node {
+
+        /** The move leading here from the parent. */
+        final int move;
+        /** Key of this position, set when it is expanded. */
+        long key;
+        /** Null until expanded. */
+        Node[] children;
+        /** True if the team to move has no legal move. */
+        boolean terminal;
+        /** For a terminal node, 0 if the team to move is checkmated and 0.5 if stalemated. */
+        double terminalValue;
+        /** Visits from the parent, including those whose results are not in yet. */
+        int visits;
+        /** Sum of results for the team that played {@link #move}: 1 a win, 0.5 a draw. */
+        double wins;
+
+        Node(int move) {
+            this.move = move;
+        }
+    }
+
+    /**
+     * Runs playouts from the root on its own copy of the board.
+     */
+    private final class Worker {
+
+        private final ChessBoard board;
+        private final ChessGame.TeamColor rootSide;
+        private final Node root;
+        private final int maxDepth;
+        private final Evaluator evaluator;
+        private final MoveOrdering ordering = new MoveOrdering();
+
+        /** Position keys of the game so far followed by the current path. */
+        private final long[] keys;
+        private final int rootIndex;
+        private final int[] clocks;
+        private final Node[] path;
+        private final IntMoveList[] moves = new IntMoveList[QUIESCENCE_PLIES + 1];
+
+        Worker(ChessGame game, Node root, int maxDepth) {
+            this.board = game.getBoard().deepCopy();
+            this.rootSide = game.getTeamTurn();
+            this.root = root;
+            this.maxDepth = maxDepth;
+            this.evaluator = evaluators.get();
+            evaluator.reset(board);
+
+            long[] history = game.positionHistory();
+            keys = new long[history.length + maxDepth + 1];
+            System.arraycopy(history, 0, keys, 0, history.length);
+            rootIndex = history.length - 1;
+            clocks = new int[maxDepth + 1];
+            clocks[0] = game.getHalfmoveClock();
+            path = new Node[maxDepth];
+            for (int i = 0; i < moves.length; i++) {
+                moves[i] = new IntMoveList();
+            }
+        }
+
+        /**
+         * Walks down to a leaf, expands and scores it, backs the result up the path and
+         * takes the moves back.
+         */
+        void playout() {
+            Node node = root;
+            ChessGame.TeamColor side = rootSide;
+            int ply = 0;
+            // Result for the team to move at the end of the path
+            double value;
+            while (true) {
+                if (ply > 0 && isDraw(ply)) {
+                    value = 0.5;
+                    break;
+                }
+                boolean expanded = false;
+                synchronized (node) {
+                    if (node.children == null && !node.terminal && ply < maxDepth) {
+                        expand(node, ply, side);
+                        expanded = true;
+                    }
+                }
+                if (node.terminal) {
+                    value = node.terminalValue;
+                    break;
+                }
+                if (expanded || node.children == null || ply >= maxDepth) {
+                    value = leafValue(side);
+                    break;
+                }
+                Node child = select(node);
+                ChessGame.TeamColor next = opponent(side);
+                push(child.move, ply, next);
+                path[ply++] = child;
+                node = child;
+                side = next;
+            }
+
+            double result = 1 - value;
+            for (int i = ply - 1; i >= 0; i--) {
+                Node parent = i == 0 ? root : path[i - 1];
+                synchronized (parent) {
+                    path[i].wins += result;
+                }
+                result = 1 - result;
+                side = opponent(side);
+                pop(path[i].move, side);
+            }
+        }
+
+        /**
+         * Adds a child for every legal move, captures and promotions first. Must be
+         * called holding the node's lock.
+         */
+        private void expand(Node node, int ply, ChessGame.TeamColor side) {
+            node.key = keys[rootIndex + ply];
+            IntMoveList list = moves[0];
+            list.clear();
+            MoveGenerator.generateLegal(board, side, list);
+            if (list.isEmpty()) {
+                node.terminalValue = inCheck(side) ? 0 : 0.5;
+                node.terminal = true;
+                return;
+            }
+            ordering.score(board, list, 0, side, Move.NONE);
+            Node[] children = new Node[list.size()];
+            for (int i = 0; i < children.length; i++) {
+                children[i] = new Node(ordering.pick(list, 0, i));
+            }
+            node.children = children;
+        }
+
+        /**
+         * @return the chance that the team to move wins, from a capture search
+         */
+        private double leafValue(ChessGame.TeamColor side) {
+            int score = quiesce(-Score.INFINITE, Score.INFINITE, 0, side);
+            if (Score.isMate(score)) {return score > 0 ? 1 : 0;}
+            return 1 / (1 + Math.exp(-score / WIN_SCALE));
+        }
+
+        /**
+         * Captures and promotions until the position is quiet, as in the alpha-beta
+         * search: standing pat on the evaluation, skipping captures that lose material,
+         * and trying every evasion when in check.
+         */
+        private int quiesce(int alpha, int beta, int ply, ChessGame.TeamColor side) {
+            if (ply >= QUIESCENCE_PLIES) {return evaluator.evaluate(board, side);}
+            if (board.isInsufficientMaterial()) {return Score.DRAW;}
+
+            boolean inCheck = inCheck(side);
+            IntMoveList list = moves[ply];
+            list.clear();
+            int best;
+            if (inCheck) {
+                MoveGenerator.generateLegal(board, side, list);
+                if (list.isEmpty()) {return -Score.MATE + ply;}
+                best = -Score.INFINITE;
+            } else {
+                best = evaluator.evaluate(board, side);
+                if (best >= beta) {return best;}
+                if (best > alpha) {alpha = best;}
+                MoveGenerator.generateLegalNoisy(board, side, list);
+            }
+            ordering.score(board, list, ply, side, Move.NONE);
+
+            ChessGame.TeamColor other = opponent(side);
+            for (int i = 0; i < list.size(); i++) {
+                int move = ordering.pick(list, ply, i);
+                if (!inCheck && ordering.isLosingCapture(ply, i)) {break;}
+                board.applyMove(move);
+                evaluator.moveMade(board, move, side);
+                int score = -quiesce(-beta, -alpha, ply + 1, other);
+                board.undoMove();
+                evaluator.moveUndone(board, move, side);
+
+                if (score > best) {
+                    best = score;
+                    if (score > alpha) {
+                        alpha = score;
+                        if (alpha >= beta) {break;}
+                    }
+                }
+            }
+            return best;
+        }
+
+        private boolean inCheck(ChessGame.TeamColor side) {
+            int king = board.getKingSquare(side);
+            return king >= 0 && board.isSquareAttacked(king, opponent(side));
+        }
+
+        private void push(int move, int ply, ChessGame.TeamColor next) {
+            boolean irreversible = Move.isCapture(move) || Move.moved(move) == ChessPiece.PieceType.PAWN;
+            board.applyMove(move);
+            evaluator.moveMade(board, move, opponent(next));
+            clocks[ply + 1] = irreversible ? 0 : clocks[ply] + 1;
+            keys[rootIndex + ply + 1] = next == ChessGame.TeamColor.BLACK
+                    ? board.getKey() ^ Zobrist.SIDE : board.getKey();
+        }
+
+        private void pop(int move, ChessGame.TeamColor mover) {
+            board.undoMove();
+            evaluator.moveUndone(board, move, mover);
+        }
+
+        /**
+         * Repeating a position already on the path or in the game counts as a draw, as
+         * in the alpha-beta search.
+         */
+        private boolean isDraw(int ply) {
+            int clock = clocks[ply];
+            if (clock >= FIFTY_MOVE_PLIES || board.isInsufficientMaterial()) {return true;}
+            int index = rootIndex + ply;
+            long key = keys[index];
+            for (int back = 4; back <= clock && back <= index; back += 2) {
+                if (keys[index - back] == key) {return true;}
+            }
+            return false;
+        }
+    }
+
+    private static ChessGame.TeamColor opponent(ChessGame.TeamColor side) {
+        return side == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+    }
+}
@@ -0,0 +1,148 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.IntMoveList;
+import chess.Move;
+
+/**
+ * Decides in which order a searcher tries moves. Scores, best first:
+ * <ol>
+ *     <li>the transposition table move</li>
+ *     <li>captures that do not lose material by {@link StaticExchange}, most valuable
+ *     victim first and then least valuable attacker (MVV-LVA)</li>
+ *     <li>queen promotions</li>
+ *     <li>the two killer moves of the ply: quiet moves that caused a cutoff in a
+ *     sibling position</li>
+ *     <li>other quiet moves by their history score</li>
+ *     <li>captures that lose material</li>
+ * </ol>
+ * Moves are picked one at a time by selection, so a node that cuts off early never
+ * pays for sorting the rest. Killers and history belong to one searcher.
+ */
+final class MoveOrdering {
+
+    private static final int HASH_MOVE = 1_000_000;
+    private static final int GOOD_CAPTURE = 200_000;
+    private static final int PROMOTION = 150_000;
+    private static final int FIRST_KILLER = 100_000;
+    private static final int SECOND_KILLER = 99_000;
+    private static final int BAD_CAPTURE = -200_000;
+    /** History scores stay within plus or minus this. */
+    private static final int HISTORY_LIMIT = 16_384;
+
+    private final int[][] killers = new int[Searcher.MAX_PLY + 1][2];
+    /** history[side][from][to] */
+    private final int[][][] history = new int[2][64][64];
+    private final int[][] scores = new int[Searcher.MAX_PLY + 1][256];
+
+    /**
+     * Scores every move in the list for {@link #pick}.
+     */
+    void score(ChessBoard board, IntMoveList moves, int ply, ChessGame.TeamColor side, int hashMove) {
+        int[] plyScores = scores(ply, moves.size());
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int score;
+            if (move == hashMove) {
+                score = HASH_MOVE;
+            } else if (Move.isCapture(move)) {
+                score = mvvLva(move) + (StaticExchange.atLeast(board, move, side, 0) ? GOOD_CAPTURE : BAD_CAPTURE);
+            } else if (Move.promotion(move) == ChessPiece.PieceType.QUEEN) {
+                score = PROMOTION;
+            } else if (move == killers[ply][0]) {
+                score = FIRST_KILLER;
+            } else if (move == killers[ply][1]) {
+                score = SECOND_KILLER;
+            } else {
+                score = history[side.ordinal()][Move.from(move)][Move.to(move)];
+            }
+            plyScores[i] = score;
+        }
+    }
+
+    /**
+     * Moves the best scored move among {@code index} and later to {@code index}.
+     *
+     * @return that move
+     */
+    int pick(IntMoveList moves, int ply, int index) {
+        int[] plyScores = scores[ply];
+        int best = index;
+        for (int i = index + 1; i < moves.size(); i++) {
+            if (plyScores[i] > plyScores[best]) {best = i;}
+        }
+        if (best != index) {
+            moves.swap(index, best);
+            int score = plyScores[index];
+            plyScores[index] = plyScores[best];
+            plyScores[best] = score;
+        }
+        return moves.get(index);
+    }
+
+    /**
+     * @return true if the move {@link #pick} put at {@code index} is a capture that
+     * loses material
+     */
+    boolean isLosingCapture(int ply, int index) {
+        return scores[ply][index] < BAD_CAPTURE / 2;
+    }
+
+    boolean isKiller(int move, int ply) {
+        return move == killers[ply][0] || move == killers[ply][1];
+    }
+
+    /**
+     * Rewards the quiet move that caused a cutoff and penalizes the quiet moves tried
+     * before it, weighted by depth so deep cutoffs count more.
+     */
+    void cutoff(int move, int ply, ChessGame.TeamColor side, int depth, IntMoveList tried, int triedCount) {
+        if (Move.isCapture(move) || Move.isPromotion(move)) {return;}
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int bonus = Math.min(depth * depth, HISTORY_LIMIT / 4);
+        int[][] sideHistory = history[side.ordinal()];
+        updateHistory(sideHistory, move, bonus);
+        for (int i = 0; i < triedCount; i++) {
+            int other = tried.get(i);
+            if (other != move && !Move.isCapture(other) && !Move.isPromotion(other)) {
+                updateHistory(sideHistory, other, -bonus);
+            }
+        }
+    }
+
+    /**
+     * Killers of the next ply belong to positions that are no longer siblings.
+     */
+    void clearKillers(int ply) {
+        if (ply < killers.length) {
+            killers[ply][0] = Move.NONE;
+            killers[ply][1] = Move.NONE;
+        }
+    }
+
+    private static void updateHistory(int[][] sideHistory, int move, int bonus) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        // Pull the score towards the limit so it never overflows into the killer range
+        sideHistory[from][to] += bonus - sideHistory[from][to] * Math.abs(bonus) / HISTORY_LIMIT;
+    }
+
+    private int[] scores(int ply, int size) {
+        if (scores[ply].length < size) {scores[ply] = new int[size];}
+        return scores[ply];
+    }
+
+    /**
+     * @return victim value times ten minus the attacker's rank
+     */
+    private static int mvvLva(int move) {
+        ChessPiece.PieceType victim = Move.captured(move);
+        int attacker = StaticExchange.VALUES[Move.moved(move).ordinal()] / 100;
+        return StaticExchange.VALUES[victim.ordinal()] * 10 - Math.min(attacker, 9);
+    }
+}
@@ -0,0 +1,265 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.random.RandomGenerator;
+
+/**
+ * An opening book file memory-mapped with {@link FileChannel#map}, so lookups read
+ * straight from the page cache and put nothing on the heap. The file uses the
+ * Polyglot layout: 16-byte big-endian entries sorted by key, each holding
+ * <pre>
+ * 8 bytes  position key
+ * 2 bytes  move: to file, to row, from file, from row in 3 bits each from the low
+ *          end, then the promotion piece (1 knight, 2 bishop, 3 rook, 4 queen)
+ * 2 bytes  weight
+ * 4 bytes  learn data, unused
+ * </pre>
+ * Keys are {@link ChessGame#positionKey()} rather than Polyglot's own hash, so books
+ * are built from games with {@link Builder}; third-party Polyglot files will not match.
+ * A lookup is a binary search for the first entry with the key followed by a scan
+ * over the entries sharing it.
+ */
+public final class OpeningBook {
+
+    private static final int ENTRY_BYTES = 16;
+    private static final ChessPiece.PieceType[] PROMOTIONS = {
+            null,
+            ChessPiece.PieceType.KNIGHT,
+            ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.ROOK,
+            ChessPiece.PieceType.QUEEN
+    };
+
+    /** How to choose between several book moves for one position. */
+    public enum Selection {
+        /** Always the move with the highest weight. */
+        BEST,
+        /** A random move, each chosen in proportion to its weight. */
+        WEIGHTED
+    }
+
+    private final ByteBuffer entries;
+    private final int size;
+
+    private OpeningBook(ByteBuffer entries) {
+        this.entries = entries;
+        this.size = entries.capacity() / ENTRY_BYTES;
+    }
+
+    /**
+     * Maps a book file read-only. The mapping stays valid after the file is closed.
+     *
+     * @throws IOException if the file cannot be read or is not a whole number of entries
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length % ENTRY_BYTES != 0) {
+                throw new IOException("Book size " + length + " is not a multiple of " + ENTRY_BYTES + ": " + path);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            return new OpeningBook(buffer.order(ByteOrder.BIG_ENDIAN));
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param random only used for {@link Selection#WEIGHTED}
+     * @return a legal book move for the team to move, or null if the position is not
+     * in the book
+     */
+    public ChessMove probe(ChessGame game, Selection selection, RandomGenerator random) {
+        long key = game.positionKey();
+        int first = firstIndex(key);
+        int total = 0;
+        int best = -1;
+        int bestWeight = -1;
+        for (int i = first; i < size && key(i) == key; i++) {
+            total += weight(i);
+            if (weight(i) > bestWeight) {
+                bestWeight = weight(i);
+                best = i;
+            }
+        }
+        if (best < 0) {return null;}
+
+        int chosen = best;
+        if (selection == Selection.WEIGHTED && total > 0) {
+            int pick = random.nextInt(total);
+            for (int i = first; pick >= 0; i++) {
+                pick -= weight(i);
+                chosen = i;
+            }
+        }
+        ChessMove move = decode(move(chosen));
+        // Guard against a key collision handing out a move from another position
+        Collection<ChessMove> legal = game.validMoves(move.getStartPosition());
+        return legal != null && legal.contains(move) ? move : null;
+    }
+
+    /**
+     * @return every book move for the position with its weight, best first
+     */
+    public List<Map.Entry<ChessMove, Integer>> moves(ChessGame game) {
+        long key = game.positionKey();
+        List<Map.Entry<ChessMove, Integer>> result = new ArrayList<>();
+        for (int i = firstIndex(key); i < size && key(i) == key; i++) {
+            result.add(Map.entry(decode(move(i)), weight(i)));
+        }
+        result.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        return result;
+    }
+
+    /**
+     * @return index of the first entry whose key is not below {@code key}, compared as
+     * unsigned the way the file is sorted
+     */
+    private int firstIndex(long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(key(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long key(int index) {
+        return entries.getLong(index * ENTRY_BYTES);
+    }
+
+    private int move(int index) {
+        return entries.getShort(index * ENTRY_BYTES + 8) & 0xFFFF;
+    }
+
+    private int weight(int index) {
+        return entries.getShort(index * ENTRY_BYTES + 10) & 0xFFFF;
+    }
+
+    static int encode(ChessMove move) {
+        ChessPosition start = move.getStartPosition();
+        ChessPosition end = move.getEndPosition();
+        int promotion = 0;
+        for (int i = 1; i < PROMOTIONS.length; i++) {
+            if (PROMOTIONS[i] == move.getPromotionPiece()) {promotion = i;}
+        }
+        return (end.getColumn() - 1) | (end.getRow() - 1) << 3 | (start.getColumn() - 1) << 6
+                | (start.getRow() - 1) << 9 | promotion << 12;
+    }
+
+    static ChessMove decode(int move) {
+        ChessPosition end = ChessPosition.of((move >>> 3 & 7) + 1, (move & 7) + 1);
+        ChessPosition start = ChessPosition.of((move >>> 9 & 7) + 1, (move >>> 6 & 7) + 1);
+        return new ChessMove(start, end, PROMOTIONS[Math.min(move >>> 12 & 7, 4)]);
+    }
+
+    /**
+     * Collects positions and moves from games and writes them out as a sorted book.
+     * Playing the same move from the same position again adds to its weight.
+     */
+    public static final class Builder {
+        /** Entries by unsigned key, then by encoded move. */
+        private final Map<Long, Map<Integer, Integer>> entries = new TreeMap<>(Long::compareUnsigned);
+
+        public Builder add(ChessGame game, ChessMove move, int weight) {
+            return add(game.positionKey(), move, weight);
+        }
+
+        private Builder add(long key, ChessMove move, int weight) {
+            entries.computeIfAbsent(key, k -> new TreeMap<>()).merge(encode(move), weight, Integer::sum);
+            return this;
+        }
+
+        /**
+         * Adds every position of a game given in coordinate notation, e.g.
+         * {@code e2e4 e7e5 g1f3}, with weight 1 per move.
+         *
+         * @throws InvalidMoveException if a move is not legal where it is played
+         */
+        public Builder addLine(String line) throws InvalidMoveException {
+            ChessGame game = new ChessGame();
+            for (String token : line.trim().split("\\s+")) {
+                if (token.isEmpty()) {continue;}
+                ChessMove move = parse(token);
+                long key = game.positionKey();
+                game.makeMove(move);
+                add(key, move, 1);
+            }
+            return this;
+        }
+
+        public void write(Path path) throws IOException {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+                for (Map.Entry<Long, Map<Integer, Integer>> position : entries.entrySet()) {
+                    for (Map.Entry<Integer, Integer> move : position.getValue().entrySet()) {
+                        out.writeLong(position.getKey());
+                        out.writeShort(move.getKey());
+                        out.writeShort(Math.min(move.getValue(), 0xFFFF));
+                        out.writeInt(0);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param token a move in coordinate notation such as {@code e2e4} or {@code a7a8q}
+     */
+    static ChessMove parse(String token) {
+        if (token.length() < 4) {
+            throw new IllegalArgumentException("Not a coordinate move: " + token);
+        }
+        ChessPosition start = ChessPosition.of(token.charAt(1) - '0', token.charAt(0) - 'a' + 1);
+        ChessPosition end = ChessPosition.of(token.charAt(3) - '0', token.charAt(2) - 'a' + 1);
+        ChessPiece.PieceType promotion = null;
+        if (token.length() > 4) {
+            promotion = switch (token.charAt(4)) {
+                case 'q' -> ChessPiece.PieceType.QUEEN;
+                case 'r' -> ChessPiece.PieceType.ROOK;
+                case 'b' -> ChessPiece.PieceType.BISHOP;
+                case 'n' -> ChessPiece.PieceType.KNIGHT;
+                default -> throw new IllegalArgumentException("Unknown promotion in " + token);
+            };
+        }
+        return new ChessMove(start, end, promotion);
+    }
+
+    /**
+     * Builds a book from a text file with one game per line in coordinate notation.
+     * Usage: {@code OpeningBook <games.txt> <book.bin>}
+     */
+    public static void main(String[] args) throws IOException, InvalidMoveException {
+        Builder builder = new Builder();
+        for (String line : Files.readAllLines(Path.of(args[0]))) {
+            if (!line.isBlank()) {builder.addLine(line);}
+        }
+        builder.write(Path.of(args[1]));
+        System.out.println("Wrote " + open(Path.of(args[1])).size() + " entries to " + args[1]);
+    }
+}
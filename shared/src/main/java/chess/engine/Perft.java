@@ -0,0 +1,172 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.Fen;
+import chess.IntMoveList;
+import chess.MoveGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Performance test: counts the leaf nodes of the legal move tree to a fixed depth.
+ * The counts pin down move generator correctness against published reference values,
+ * and the timing gives a throughput baseline for changes to the engine.
+ * <p>
+ * The rules engine has no castling or en passant, so the reference table only lists
+ * positions and depths where neither rule can come up.
+ */
+public final class Perft {
+
+    public record Result(long nodes, long nanos) {
+        public long nodesPerSecond() {
+            return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+        }
+    }
+
+    /**
+     * A published test position with its node counts; {@code nodes[d - 1]} is the
+     * count for depth {@code d}.
+     */
+    public record ReferencePosition(String name, String fen, long... nodes) {
+        public int maxDepth() {
+            return nodes.length;
+        }
+    }
+
+    public static final List<ReferencePosition> REFERENCE_POSITIONS = List.of(
+            new ReferencePosition("start", Fen.START, 20, 400, 8_902, 197_281),
+            new ReferencePosition("promotions", "n1n5/PPPk4/8/8/8/8/4Kppp/5N1N b - - 0 1",
+                    24, 496, 9_483, 182_838, 3_605_103),
+            new ReferencePosition("position 3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 14, 191),
+            new ReferencePosition("position 6",
+                    "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                    46, 2_079, 89_890, 3_894_594)
+    );
+
+    private Perft() {
+    }
+
+    public static Result run(ChessGame game, int depth) {
+        long start = System.nanoTime();
+        long nodes = count(game.getBoard().deepCopy(), game.getTeamTurn(), depth);
+        return new Result(nodes, System.nanoTime() - start);
+    }
+
+    /**
+     * Same as {@link #run} but splits the root moves across the pool, each subtree on
+     * its own copy of the board.
+     */
+    public static Result runParallel(ChessGame game, int depth, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        long nodes = pool.invoke(new RootTask(game.getBoard().deepCopy(), game.getTeamTurn(), depth));
+        return new Result(nodes, System.nanoTime() - start);
+    }
+
+    /**
+     * Counts leaf nodes on the given board, which is left as it was found.
+     */
+    public static long count(ChessBoard board, ChessGame.TeamColor side, int depth) {
+        if (depth <= 0) {return 1;}
+        IntMoveList[] lists = new IntMoveList[depth + 1];
+        for (int i = 0; i <= depth; i++) {
+            lists[i] = new IntMoveList();
+        }
+        return count(board, side, depth, lists);
+    }
+
+    private static long count(ChessBoard board, ChessGame.TeamColor side, int depth, IntMoveList[] lists) {
+        if (depth == 1) {return MoveGenerator.countLegal(board, side);}
+        IntMoveList moves = lists[depth];
+        moves.clear();
+        MoveGenerator.generateLegal(board, side, moves);
+
+        ChessGame.TeamColor other = opponent(side);
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            board.applyMove(moves.get(i));
+            nodes += count(board, other, depth - 1, lists);
+            board.undoMove();
+        }
+        return nodes;
+    }
+
+    private static ChessGame.TeamColor opponent(ChessGame.TeamColor side) {
+        return side == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+    }
+
+    private static final class RootTask extends RecursiveTask<Long> {
+        private final ChessBoard board;
+        private final ChessGame.TeamColor side;
+        private final int depth;
+        private final int move;
+
+        RootTask(ChessBoard board, ChessGame.TeamColor side, int depth) {
+            this(board, side, depth, 0);
+        }
+
+        private RootTask(ChessBoard board, ChessGame.TeamColor side, int depth, int move) {
+            this.board = board;
+            this.side = side;
+            this.depth = depth;
+            this.move = move;
+        }
+
+        @Override
+        protected Long compute() {
+            if (move != 0) {
+                board.applyMove(move);
+                return count(board, opponent(side), depth - 1);
+            }
+            if (depth <= 1) {return count(board, side, depth);}
+
+            IntMoveList moves = new IntMoveList();
+            MoveGenerator.generateLegal(board, side, moves);
+            List<RootTask> tasks = new ArrayList<>(moves.size());
+            for (int i = 0; i < moves.size(); i++) {
+                tasks.add(new RootTask(board.deepCopy(), side, depth, moves.get(i)));
+            }
+            long nodes = 0;
+            for (RootTask task : invokeAll(tasks)) {
+                nodes += task.join();
+            }
+            return nodes;
+        }
+    }
+
+    /**
+     * Runs the reference suite and prints node counts and speed.
+     * Usage: {@code Perft [--parallel] [maxDepth]}
+     */
+    public static void main(String[] args) {
+        boolean parallel = false;
+        int maxDepth = Integer.MAX_VALUE;
+        for (String arg : args) {
+            if (arg.equals("--parallel")) {
+                parallel = true;
+            } else {
+                maxDepth = Integer.parseInt(arg);
+            }
+        }
+
+        boolean passed = true;
+        for (ReferencePosition position : REFERENCE_POSITIONS) {
+            ChessGame game = Fen.parse(position.fen());
+            for (int depth = 1; depth <= Math.min(maxDepth, position.maxDepth()); depth++) {
+                Result result = parallel ? runParallel(game, depth, ForkJoinPool.commonPool()) : run(game, depth);
+                long expected = position.nodes()[depth - 1];
+                boolean ok = result.nodes() == expected;
+                passed &= ok;
+                System.out.printf("%-12s depth %d  nodes %,12d  %s  %8.1f ms  %,12d nps%n",
+                        position.name(), depth, result.nodes(), ok ? "ok  " : "FAIL (expected " + expected + ")",
+                        result.nanos() / 1e6, result.nodesPerSecond());
+            }
+        }
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package chess.engine;
+
+/**
+ * Search scores are centipawns from the point of view of the team to move. Mates are
+ * scored {@link #MATE} minus the distance in plies, so shorter mates score higher and
+ * anything beyond {@link #MATE_BOUND} is a forced mate.
+ */
+public final class Score {
+
+    public static final int DRAW = 0;
+    public static final int MATE = 32_000;
+    /** Leaves room for tablebase mates, which can lie far beyond the search horizon. */
+    public static final int MATE_BOUND = MATE - 1024;
+    /** Larger than any score a search can return. */
+    public static final int INFINITE = MATE + 1;
+
+    private Score() {
+    }
+
+    public static boolean isMate(int score) {
+        return Math.abs(score) >= MATE_BOUND;
+    }
+
+    /**
+     * @return moves until mate, negative if the team to move gets mated
+     */
+    public static int mateIn(int score) {
+        return score > 0 ? (MATE - score + 1) / 2 : -(MATE + score) / 2;
+    }
+
+    /**
+     * @return {@code cp 35} for an ordinary score, {@code mate 3} or {@code mate -2} for mates
+     */
+    public static String toString(int score) {
+        return isMate(score) ? "mate " + mateIn(score) : "cp " + score;
+    }
+}
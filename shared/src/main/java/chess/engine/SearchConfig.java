@@ -0,0 +1,56 @@
+package chess.engine;
+
+/**
+ * Switches and margins for the selective parts of the alpha-beta search. All of them
+ * trade a little accuracy for a much narrower tree; {@link #NONE} turns them all off to
+ * get the plain full-width search back, e.g. to measure what each one buys with
+ * {@link Bench}.
+ *
+ * @param nullMove            let the opponent move twice at non-PV nodes and cut off if
+ *                            the position still holds, searched {@code nullMoveReduction}
+ *                            plies shallower
+ * @param nullMoveMinDepth    shallowest remaining depth to try a null move at
+ * @param nullMoveReduction   base depth reduction for the null move search
+ * @param lateMoveReductions  search quiet moves late in the ordering shallower and only
+ *                            re-search the ones that turn out better than expected
+ * @param lmrMinDepth         shallowest remaining depth to reduce at
+ * @param lmrMinMoves         how many moves are always searched at full depth
+ * @param futility            near the leaves, skip quiet moves when the static evaluation
+ *                            plus a margin cannot reach alpha, and return the evaluation
+ *                            when it stays above beta even after giving up the margin
+ * @param futilityMaxDepth    deepest remaining depth futility applies at
+ * @param futilityMargin      margin per ply of remaining depth, in centipawns
+ * @param razoring            drop straight into quiescence search when the static
+ *                            evaluation is far below alpha close to the leaves
+ * @param razoringMaxDepth    deepest remaining depth razoring applies at
+ * @param razoringMargin      margin per ply of remaining depth, in centipawns
+ */
+public record SearchConfig(boolean nullMove, int nullMoveMinDepth, int nullMoveReduction,
+                           boolean lateMoveReductions, int lmrMinDepth, int lmrMinMoves,
+                           boolean futility, int futilityMaxDepth, int futilityMargin,
+                           boolean razoring, int razoringMaxDepth, int razoringMargin) {
+
+    public static final SearchConfig DEFAULT = new SearchConfig(true, 3, 2, true, 3, 3, true, 3, 120, true, 1, 300);
+    public static final SearchConfig NONE = DEFAULT.withNullMove(false).withLateMoveReductions(false)
+            .withFutility(false).withRazoring(false);
+
+    public SearchConfig withNullMove(boolean enabled) {
+        return new SearchConfig(enabled, nullMoveMinDepth, nullMoveReduction, lateMoveReductions, lmrMinDepth,
+                lmrMinMoves, futility, futilityMaxDepth, futilityMargin, razoring, razoringMaxDepth, razoringMargin);
+    }
+
+    public SearchConfig withLateMoveReductions(boolean enabled) {
+        return new SearchConfig(nullMove, nullMoveMinDepth, nullMoveReduction, enabled, lmrMinDepth,
+                lmrMinMoves, futility, futilityMaxDepth, futilityMargin, razoring, razoringMaxDepth, razoringMargin);
+    }
+
+    public SearchConfig withFutility(boolean enabled) {
+        return new SearchConfig(nullMove, nullMoveMinDepth, nullMoveReduction, lateMoveReductions, lmrMinDepth,
+                lmrMinMoves, enabled, futilityMaxDepth, futilityMargin, razoring, razoringMaxDepth, razoringMargin);
+    }
+
+    public SearchConfig withRazoring(boolean enabled) {
+        return new SearchConfig(nullMove, nullMoveMinDepth, nullMoveReduction, lateMoveReductions, lmrMinDepth,
+                lmrMinMoves, futility, futilityMaxDepth, futilityMargin, enabled, razoringMaxDepth, razoringMargin);
+    }
+}
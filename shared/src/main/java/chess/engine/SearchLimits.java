@@ -0,0 +1,45 @@
+package chess.engine;
+
+/**
+ * When a search has to stop. A search ends at whichever limit it reaches first, but
+ * always completes at least one ply so there is a move to return.
+ *
+ * @param depth  deepest iteration to search, in plies
+ * @param nodes  node budget, or 0 for no limit
+ * @param millis time budget in milliseconds, or 0 for no limit
+ */
+public record SearchLimits(int depth, long nodes, long millis) {
+
+    public static final int MAX_DEPTH = 64;
+
+    public SearchLimits {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Search depth must be at least 1: " + depth);
+        }
+        depth = Math.min(depth, MAX_DEPTH);
+    }
+
+    public static SearchLimits depth(int depth) {
+        return new SearchLimits(depth, 0, 0);
+    }
+
+    public static SearchLimits nodes(long nodes) {
+        return new SearchLimits(MAX_DEPTH, nodes, 0);
+    }
+
+    public static SearchLimits millis(long millis) {
+        return new SearchLimits(MAX_DEPTH, 0, millis);
+    }
+
+    public SearchLimits withDepth(int depth) {
+        return new SearchLimits(depth, nodes, millis);
+    }
+
+    public SearchLimits withNodes(long nodes) {
+        return new SearchLimits(depth, nodes, millis);
+    }
+
+    public SearchLimits withMillis(long millis) {
+        return new SearchLimits(depth, nodes, millis);
+    }
+}
@@ -0,0 +1,14 @@
+package chess.engine;
+
+/**
+ * Receives intermediate results while an {@link Engine} is still searching.
+ */
+@FunctionalInterface
+public interface SearchListener {
+
+    /**
+     * Called on the searching thread each time an iteration completes, so it should
+     * return quickly.
+     */
+    void onIteration(SearchResult result);
+}
@@ -0,0 +1,48 @@
+package chess.engine;
+
+import chess.ChessMove;
+
+import java.util.List;
+
+/**
+ * Outcome of a search, or of one iteration of it, or a move taken from an opening book.
+ *
+ * @param bestMove           the move to play, or null if there is no legal move
+ * @param principalVariation the line the search expects, starting with {@code bestMove}
+ * @param score              centipawns from the point of view of the team to move,
+ *                           see {@link Score} for mate scores; a book move has none
+                           and this is 0
+ * @param depth              the deepest completed iteration
+ * @param nodes              positions visited
+ * @param nanos              time spent searching
+ * @param book               true if the move came from an opening book instead of a search
+ */
+public record SearchResult(ChessMove bestMove, List<ChessMove> principalVariation, int score, int depth,
+                           long nodes, long nanos, boolean book) {
+
+    public SearchResult(ChessMove bestMove, List<ChessMove> principalVariation, int score, int depth, long nodes,
+                        long nanos) {
+        this(bestMove, principalVariation, score, depth, nodes, nanos, false);
+    }
+
+    /**
+     * @return a move taken from an opening book, which has no score and no depth
+     */
+    public static SearchResult bookMove(ChessMove move, long nanos) {
+        return new SearchResult(move, List.of(move), Score.DRAW, 0, 0, nanos, true);
+    }
+
+    public long nodesPerSecond() {
+        return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder pv = new StringBuilder();
+        for (ChessMove move : principalVariation) {
+            pv.append(' ').append(move);
+        }
+        if (book) {return "book pv" + pv;}
+        return "depth " + depth + " score " + Score.toString(score) + " nodes " + nodes + " pv" + pv;
+    }
+}
@@ -0,0 +1,402 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.IntMoveList;
+import chess.Move;
+import chess.MoveGenerator;
+import chess.Zobrist;
+import chess.eval.Evaluator;
+import chess.tablebase.Tablebase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One thread's alpha-beta search over its own copy of the board. Searchers working on
+ * the same position share the transposition table, the stop flag and the node count,
+ * which is all {@link LazySmpEngine} needs to run several of them at once.
+ */
+final class Searcher {
+
+    static final int MAX_PLY = 2 * SearchLimits.MAX_DEPTH;
+
+    private static final int FIFTY_MOVE_PLIES = 100;
+    private static final int CHECK_INTERVAL = 2048;
+    /** Material signature nibbles of one team's queens, bishops, knights and rooks. */
+    private static final long PIECE_MATERIAL_MASK = 0xFFFF0L;
+    /** Late move reduction in plies by remaining depth and move number. */
+    private static final int[][] REDUCTIONS = new int[64][64];
+
+    static {
+        for (int depth = 1; depth < 64; depth++) {
+            for (int move = 1; move < 64; move++) {
+                REDUCTIONS[depth][move] = (int) (0.75 + Math.log(depth) * Math.log(move) / 2.25);
+            }
+        }
+    }
+
+    private final ChessBoard board;
+    private final ChessGame.TeamColor rootSide;
+    private final SearchLimits limits;
+    private final TranspositionTable table;
+    private final Evaluator evaluator;
+    private final SearchConfig config;
+    private final Tablebase tablebase;
+    private final AtomicBoolean stop;
+    /** Nodes searched by every searcher on this position, flushed every {@link #CHECK_INTERVAL}. */
+    private final AtomicLong totalNodes;
+    /** The main searcher reports results and enforces the limits; helpers only fill the table. */
+    private final boolean main;
+    private final long start;
+    private final long deadline;
+
+    /** Position keys of the game so far followed by the current search path. */
+    private final long[] keys;
+    private final int rootIndex;
+    /** Halfmove clock per ply, for the fifty-move rule and to bound repetition scans. */
+    private final int[] clocks = new int[MAX_PLY + 1];
+
+    private final IntMoveList[] moves = new IntMoveList[MAX_PLY];
+    private final MoveOrdering ordering = new MoveOrdering();
+    private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+
+    /** Nodes not yet added to {@link #totalNodes}. */
+    private long nodes;
+    private boolean stopped;
+    private int completedDepth;
+
+    Searcher(ChessGame game, SearchLimits limits, TranspositionTable table, Evaluator evaluator,
+             SearchConfig config, Tablebase tablebase, AtomicBoolean stop, AtomicLong totalNodes, boolean main) {
+        this.board = game.getBoard().deepCopy();
+        this.rootSide = game.getTeamTurn();
+        this.limits = limits;
+        this.table = table;
+        this.evaluator = evaluator;
+        this.config = config;
+        this.tablebase = tablebase;
+        this.stop = stop;
+        this.totalNodes = totalNodes;
+        this.main = main;
+        evaluator.reset(board);
+        this.start = System.nanoTime();
+        this.deadline = limits.millis() > 0 ? start + limits.millis() * 1_000_000L : Long.MAX_VALUE;
+
+        long[] history = game.positionHistory();
+        keys = new long[history.length + MAX_PLY + 1];
+        System.arraycopy(history, 0, keys, 0, history.length);
+        rootIndex = history.length - 1;
+        clocks[0] = game.getHalfmoveClock();
+        for (int i = 0; i < MAX_PLY; i++) {
+            moves[i] = new IntMoveList();
+        }
+    }
+
+    /**
+     * Deepens one ply at a time until a limit is reached, the stop flag is set or the
+     * result cannot change any more.
+     *
+     * @return the result of the last completed iteration
+     */
+    SearchResult run(SearchListener listener) {
+        return run(0, 0, listener);
+    }
+
+    /**
+     * Deepens like {@link #run(SearchListener)} but leaves out some depths: they are
+     * taken in runs of {@code skipSize}, every other run is skipped, and
+     * {@code skipPhase} shifts where the runs start. Helper threads use different
+     * patterns so they do not all search the same tree in lockstep.
+     *
+     * @param skipSize  depths per run, or 0 to search every depth
+     * @param skipPhase how far the runs are shifted
+     */
+    SearchResult run(int skipSize, int skipPhase, SearchListener listener) {
+        SearchResult result = null;
+        for (int depth = 1; depth <= limits.depth(); depth++) {
+            if (skipSize > 0 && ((depth + skipPhase) / skipSize) % 2 != 0) {continue;}
+            int score = search(depth, -Score.INFINITE, Score.INFINITE, 0, rootSide, false);
+            if (stopped) {break;}
+
+            completedDepth = depth;
+            result = result(score, depth);
+            if (listener != null) {listener.onIteration(result);}
+            if (pvLength[0] == 0) {break;}
+            if (Score.isMate(score) && Score.MATE - Math.abs(score) <= depth) {break;}
+        }
+        return result;
+    }
+
+    /**
+     * @param allowNull false right after a null move, so two never follow each other
+     */
+    private int search(int depth, int alpha, int beta, int ply, ChessGame.TeamColor side, boolean allowNull) {
+        pvLength[ply] = 0;
+        if (ply > 0 && isDraw(ply)) {return Score.DRAW;}
+        if (ply > 0) {
+            int exact = tablebase.probe(board, side);
+            if (exact != Tablebase.UNKNOWN) {return TranspositionTable.fromTable(exact, ply);}
+        }
+        if (depth <= 0) {return quiesce(alpha, beta, ply, side);}
+        nodes++;
+        if (nodes == CHECK_INTERVAL) {checkLimits();}
+        if (stopped) {return 0;}
+        if (ply >= MAX_PLY) {return evaluator.evaluate(board, side);}
+
+        // Checks are searched one ply deeper so pruning never cuts a forcing line short
+        boolean inCheck = inCheck(side);
+        if (inCheck) {depth++;}
+
+        boolean pvNode = beta - alpha > 1;
+        long key = keys[rootIndex + ply];
+        long entry = table.probe(key);
+        int hashMove = Move.NONE;
+        if (entry != TranspositionTable.MISS) {
+            hashMove = TranspositionTable.move(entry);
+            if (!pvNode && TranspositionTable.depth(entry) >= depth) {
+                int score = TranspositionTable.fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        ChessGame.TeamColor other = opponent(side);
+        int staticEval = inCheck ? -Score.INFINITE : evaluator.evaluate(board, side);
+        boolean quietNode = !pvNode && !inCheck && !Score.isMate(alpha) && !Score.isMate(beta);
+
+        if (quietNode && config.futility() && depth <= config.futilityMaxDepth()
+                && staticEval - config.futilityMargin() * depth >= beta) {
+            return staticEval;
+        }
+        if (quietNode && config.razoring() && depth <= config.razoringMaxDepth()
+                && staticEval + config.razoringMargin() * depth < alpha) {
+            int score = quiesce(alpha, alpha + 1, ply, side);
+            if (score <= alpha) {return score;}
+        }
+        if (quietNode && allowNull && config.nullMove() && depth >= config.nullMoveMinDepth()
+                && staticEval >= beta && hasPieces(side)) {
+            int reduction = config.nullMoveReduction() + depth / 6;
+            pushNull(ply, other);
+            int score = -search(depth - 1 - reduction, -beta, -beta + 1, ply + 1, other, false);
+            if (stopped) {return 0;}
+            if (score >= beta) {return Score.isMate(score) ? beta : score;}
+        }
+
+        IntMoveList list = moves[ply];
+        list.clear();
+        MoveGenerator.generateLegal(board, side, list);
+        if (list.isEmpty()) {
+            return inCheck ? -Score.MATE + ply : Score.DRAW;
+        }
+        ordering.score(board, list, ply, side, hashMove);
+        ordering.clearKillers(ply + 1);
+
+        boolean futile = quietNode && config.futility() && depth <= config.futilityMaxDepth()
+                && staticEval + config.futilityMargin() * depth <= alpha;
+        int originalAlpha = alpha;
+        int best = -Score.INFINITE;
+        int bestMove = Move.NONE;
+        for (int i = 0; i < list.size(); i++) {
+            int move = ordering.pick(list, ply, i);
+            boolean quiet = !Move.isCapture(move) && !Move.isPromotion(move);
+            push(move, ply, other);
+            boolean givesCheck = inCheck(other);
+            if (futile && quiet && i > 0 && !givesCheck) {
+                pop(move, side);
+                continue;
+            }
+
+            int score;
+            if (i == 0) {
+                score = -search(depth - 1, -beta, -alpha, ply + 1, other, true);
+            } else {
+                int reduction = 0;
+                if (config.lateMoveReductions() && quiet && !inCheck && !givesCheck
+                        && depth >= config.lmrMinDepth() && i >= config.lmrMinMoves() && !ordering.isKiller(move, ply)) {
+                    reduction = Math.max(0, Math.min(depth - 2, REDUCTIONS[Math.min(depth, 63)][Math.min(i, 63)]
+                            - (pvNode ? 1 : 0)));
+                }
+                score = -search(depth - 1 - reduction, -alpha - 1, -alpha, ply + 1, other, true);
+                if (reduction > 0 && score > alpha) {
+                    score = -search(depth - 1, -alpha - 1, -alpha, ply + 1, other, true);
+                }
+                if (score > alpha && score < beta) {
+                    score = -search(depth - 1, -beta, -alpha, ply + 1, other, true);
+                }
+            }
+            pop(move, side);
+            if (stopped) {return 0;}
+
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePv(ply, move);
+                    if (alpha >= beta) {
+                        ordering.cutoff(move, ply, side, depth, list, i);
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = best >= beta ? TranspositionTable.LOWER
+                : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(key, bound == TranspositionTable.UPPER ? Move.NONE : bestMove,
+                TranspositionTable.toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    /**
+     * Searches captures and promotions only until the position is quiet, so a leaf is
+     * never scored in the middle of an exchange. The side to move may stand pat on the
+     * static evaluation instead of capturing, and captures that lose material by static
+     * exchange are skipped. In check every evasion is searched, so mates are still seen.
+     */
+    private int quiesce(int alpha, int beta, int ply, ChessGame.TeamColor side) {
+        pvLength[ply] = 0;
+        nodes++;
+        if (nodes == CHECK_INTERVAL) {checkLimits();}
+        if (stopped) {return 0;}
+        if (ply >= MAX_PLY) {return evaluator.evaluate(board, side);}
+        if (board.isInsufficientMaterial()) {return Score.DRAW;}
+
+        boolean inCheck = inCheck(side);
+        IntMoveList list = moves[ply];
+        list.clear();
+        int best;
+        if (inCheck) {
+            MoveGenerator.generateLegal(board, side, list);
+            if (list.isEmpty()) {return -Score.MATE + ply;}
+            best = -Score.INFINITE;
+        } else {
+            best = evaluator.evaluate(board, side);
+            if (best >= beta) {return best;}
+            if (best > alpha) {alpha = best;}
+            MoveGenerator.generateLegalNoisy(board, side, list);
+        }
+        ordering.score(board, list, ply, side, Move.NONE);
+
+        ChessGame.TeamColor other = opponent(side);
+        for (int i = 0; i < list.size(); i++) {
+            int move = ordering.pick(list, ply, i);
+            if (!inCheck && ordering.isLosingCapture(ply, i)) {break;}
+            push(move, ply, other);
+            int score = -quiesce(-beta, -alpha, ply + 1, other);
+            pop(move, side);
+            if (stopped) {return 0;}
+
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePv(ply, move);
+                    if (alpha >= beta) {break;}
+                }
+            }
+        }
+        return best;
+    }
+
+    private boolean inCheck(ChessGame.TeamColor side) {
+        int king = board.getKingSquare(side);
+        return king >= 0 && board.isSquareAttacked(king, opponent(side));
+    }
+
+    /**
+     * Plays a move on the board and records the resulting position for draw checks.
+     */
+    private void push(int move, int ply, ChessGame.TeamColor next) {
+        boolean irreversible = Move.isCapture(move) || Move.moved(move) == ChessPiece.PieceType.PAWN;
+        board.applyMove(move);
+        evaluator.moveMade(board, move, opponent(next));
+        clocks[ply + 1] = irreversible ? 0 : clocks[ply] + 1;
+        keys[rootIndex + ply + 1] = next == ChessGame.TeamColor.BLACK ? board.getKey() ^ Zobrist.SIDE : board.getKey();
+    }
+
+    /**
+     * Passes the turn without moving. Only the key changes; the board and the
+     * evaluator stay as they are, so there is nothing to take back.
+     */
+    private void pushNull(int ply, ChessGame.TeamColor next) {
+        clocks[ply + 1] = clocks[ply] + 1;
+        keys[rootIndex + ply + 1] = keys[rootIndex + ply] ^ Zobrist.SIDE;
+    }
+
+    /**
+     * Null moves are unsound in pawn endings, where having to move is often what loses.
+     */
+    private boolean hasPieces(ChessGame.TeamColor side) {
+        long material = board.getMaterial() >>> (side.ordinal() * 24);
+        return (material & PIECE_MATERIAL_MASK) != 0;
+    }
+
+    private void pop(int move, ChessGame.TeamColor mover) {
+        board.undoMove();
+        evaluator.moveUndone(board, move, mover);
+    }
+
+    /**
+     * A position that repeats one already on the path or in the game is scored as a
+     * draw right away: if repeating was good once it is good again.
+     */
+    private boolean isDraw(int ply) {
+        int clock = clocks[ply];
+        if (clock >= FIFTY_MOVE_PLIES || board.isInsufficientMaterial()) {return true;}
+        int index = rootIndex + ply;
+        long key = keys[index];
+        for (int back = 4; back <= clock && back <= index; back += 2) {
+            if (keys[index - back] == key) {return true;}
+        }
+        return false;
+    }
+
+    /**
+     * Adds this searcher's nodes to the shared count and looks at the limits. Only the
+     * main searcher ends the search, and not before it has a move to return; helpers
+     * stop when they see the flag.
+     */
+    private void checkLimits() {
+        long total = totalNodes.addAndGet(nodes);
+        nodes = 0;
+        if (!main) {
+            stopped = stop.get();
+            return;
+        }
+        if (completedDepth == 0) {return;}
+        if (stop.get() || (limits.nodes() > 0 && total >= limits.nodes()) || System.nanoTime() >= deadline) {
+            stop.set(true);
+            stopped = true;
+        }
+    }
+
+    private void updatePv(int ply, int move) {
+        pv[ply][0] = move;
+        System.arraycopy(pv[ply + 1], 0, pv[ply], 1, pvLength[ply + 1]);
+        pvLength[ply] = pvLength[ply + 1] + 1;
+    }
+
+    private SearchResult result(int score, int depth) {
+        List<ChessMove> line = new ArrayList<>(pvLength[0]);
+        for (int i = 0; i < pvLength[0]; i++) {
+            line.add(Move.toChessMove(pv[0][i]));
+        }
+        ChessMove best = line.isEmpty() ? null : line.get(0);
+        return new SearchResult(best, List.copyOf(line), score, depth, totalNodes.get() + nodes,
+                System.nanoTime() - start);
+    }
+
+    private static ChessGame.TeamColor opponent(ChessGame.TeamColor side) {
+        return side == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+    }
+}
@@ -0,0 +1,80 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.Move;
+
+/**
+ * Static exchange evaluation: plays out every capture on the target square of a move,
+ * each side always recapturing with its least valuable piece, to tell whether the move
+ * loses material. Pieces are taken off a local occupancy mask rather than the board,
+ * and recomputing the attackers from that mask uncovers sliders behind them.
+ */
+final class StaticExchange {
+
+    /** Exchange value per piece type ordinal: king, queen, bishop, knight, rook, pawn. */
+    static final int[] VALUES = {20_000, 900, 330, 320, 500, 100};
+
+    /** Least valuable first. */
+    private static final ChessPiece.PieceType[] ATTACKER_ORDER = {
+            ChessPiece.PieceType.PAWN,
+            ChessPiece.PieceType.KNIGHT,
+            ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.ROOK,
+            ChessPiece.PieceType.QUEEN,
+            ChessPiece.PieceType.KING
+    };
+
+    private StaticExchange() {
+    }
+
+    /**
+     * @return true if the side making the move comes out of the exchange at least
+     * {@code threshold} centipawns up
+     */
+    static boolean atLeast(ChessBoard board, int move, ChessGame.TeamColor side, int threshold) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        ChessPiece.PieceType captured = Move.captured(move);
+
+        int swap = (captured == null ? 0 : VALUES[captured.ordinal()]) - threshold;
+        if (swap < 0) {return false;}
+        swap = VALUES[Move.moved(move).ordinal()] - swap;
+        if (swap <= 0) {return true;}
+
+        long occupied = board.getOccupancy() ^ (1L << from) ^ (1L << to);
+        ChessGame.TeamColor mover = side;
+        boolean result = true;
+        while (true) {
+            mover = opponent(mover);
+            long attackers = board.attackersTo(to, mover, occupied) & occupied;
+            if (attackers == 0) {break;}
+
+            ChessPiece.PieceType next = null;
+            long piece = 0;
+            for (ChessPiece.PieceType type : ATTACKER_ORDER) {
+                piece = attackers & board.getPieces(mover, type);
+                if (piece != 0) {
+                    next = type;
+                    break;
+                }
+            }
+            if (next == ChessPiece.PieceType.KING) {
+                // The king may only take last, when nothing can take it back
+                long defenders = board.attackersTo(to, opponent(mover), occupied) & occupied;
+                if (defenders == 0) {result = !result;}
+                break;
+            }
+            result = !result;
+            swap = VALUES[next.ordinal()] - swap;
+            if (swap < (result ? 1 : 0)) {break;}
+            occupied ^= Long.lowestOneBit(piece);
+        }
+        return result;
+    }
+
+    private static ChessGame.TeamColor opponent(ChessGame.TeamColor side) {
+        return side == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+    }
+}
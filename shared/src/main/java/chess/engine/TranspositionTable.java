@@ -0,0 +1,162 @@
+package chess.engine;
+
+import chess.Move;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size hash table of search results keyed by 64-bit position key, shared by
+ * every thread searching with it. All entries live in one preallocated {@code long[]}
+ * so the table creates no objects after construction.
+ * <p>
+ * An entry is two longs: the key XOR the data, then the data. A reader accepts an
+ * entry only if the two XOR back to its key, so an entry torn by two threads writing
+ * at once reads as a miss instead of as another position's result, and no locks are
+ * needed. Data is packed as
+ * <pre>
+ * bits  0-21  best move ({@link Move} layout), or {@link Move#NONE}
+ * bits 22-37  score, signed
+ * bits 38-45  depth
+ * bits 46-47  bound: {@link #UPPER}, {@link #LOWER} or {@link #EXACT}, never 0
+ * bits 48-55  generation of the search that stored it
+ * </pre>
+ * Entries come in buckets of two: the first slot keeps the deepest result and only
+ * gives way to deeper or newer ones, the second always takes the latest result.
+ */
+public final class TranspositionTable {
+
+    /** The score is at most this value. */
+    public static final int UPPER = 1;
+    /** The score is at least this value. */
+    public static final int LOWER = 2;
+    public static final int EXACT = 3;
+
+    /** Returned by {@link #probe} when there is no entry for the key. */
+    public static final long MISS = 0;
+
+    private static final int ENTRY_BYTES = 16;
+    private static final int BUCKET_LONGS = 4;
+
+    private final long[] table;
+    private final int bucketMask;
+    private int generation;
+
+    /**
+     * @param megabytes memory to use, rounded down to a power of two number of buckets
+     */
+    public TranspositionTable(int megabytes) {
+        if (megabytes < 1) {
+            throw new IllegalArgumentException("Transposition table needs at least 1 MB: " + megabytes);
+        }
+        long buckets = Long.highestOneBit((long) megabytes * 1024 * 1024 / (ENTRY_BYTES * 2));
+        buckets = Math.min(buckets, 1L << 28);
+        table = new long[(int) buckets * BUCKET_LONGS];
+        bucketMask = (int) buckets - 1;
+    }
+
+    /**
+     * @return the packed data stored for the key, or {@link #MISS}
+     */
+    public long probe(long key) {
+        int index = bucket(key);
+        for (int slot = index; slot < index + BUCKET_LONGS; slot += 2) {
+            long data = table[slot + 1];
+            if ((table[slot] ^ data) == key && data != MISS) {return data;}
+        }
+        return MISS;
+    }
+
+    /**
+     * @param score already adjusted with {@link #toTable} if it is a mate score
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int index = bucket(key);
+        int slot = index;
+        long deepest = table[index + 1];
+        boolean sameKey = (table[index] ^ deepest) == key;
+        if (!sameKey && deepest != MISS && depth(deepest) > depth && generation(deepest) == generation) {
+            slot = index + 2;
+        }
+
+        long previous = table[slot + 1];
+        if (move == Move.NONE && (table[slot] ^ previous) == key) {move = move(previous);}
+        long data = (move & 0x3F_FFFFL)
+                | ((long) (score & 0xFFFF) << 22)
+                | ((long) Math.min(depth, 0xFF) << 38)
+                | ((long) bound << 46)
+                | ((long) generation << 48);
+        table[slot] = key ^ data;
+        table[slot + 1] = data;
+    }
+
+    /**
+     * Starts a new search: entries from earlier searches stay usable but no longer
+     * block the deepest slot of their bucket.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+        generation = 0;
+    }
+
+    /**
+     * @return roughly how many of every thousand slots hold an entry from the current
+     * search, sampled from the start of the table
+     */
+    public int hashfull() {
+        int sampled = Math.min(1000, table.length / 2);
+        int used = 0;
+        for (int i = 0; i < sampled; i++) {
+            long data = table[i * 2 + 1];
+            if (data != MISS && generation(data) == generation) {used++;}
+        }
+        return used * 1000 / sampled;
+    }
+
+    public int sizeMegabytes() {
+        return (int) ((long) table.length * Long.BYTES / (1024 * 1024));
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0x3F_FFFFL);
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> 22);
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> 38) & 0xFF;
+    }
+
+    public static int bound(long data) {
+        return (int) (data >>> 46) & 3;
+    }
+
+    private static int generation(long data) {
+        return (int) (data >>> 48) & 0xFF;
+    }
+
+    /**
+     * Mate scores count plies from the root, but an entry can be reached at any ply,
+     * so they are stored as distance from the position itself.
+     */
+    public static int toTable(int score, int ply) {
+        if (score >= Score.MATE_BOUND) {return score + ply;}
+        if (score <= -Score.MATE_BOUND) {return score - ply;}
+        return score;
+    }
+
+    public static int fromTable(int score, int ply) {
+        if (score >= Score.MATE_BOUND) {return score - ply;}
+        if (score <= -Score.MATE_BOUND) {return score + ply;}
+        return score;
+    }
+
+    private int bucket(long key) {
+        return ((int) key & bucketMask) * BUCKET_LONGS;
+    }
+}
@@ -0,0 +1,36 @@
+package chess.eval;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+
+/**
+ * Scores positions for the search. An evaluator follows one board through a search:
+ * it is {@link #reset} once at the root and then told about every move made and taken
+ * back, so it can keep its terms up to date instead of looking at all 64 squares at
+ * every leaf. Evaluators therefore hold per-search state and each search thread needs
+ * its own instance.
+ */
+public interface Evaluator {
+
+    /**
+     * Recomputes everything from the pieces on the board.
+     */
+    void reset(ChessBoard board);
+
+    /**
+     * Called right after a packed {@link chess.Move} was played on the board.
+     *
+     * @param mover the team that made the move
+     */
+    void moveMade(ChessBoard board, int move, ChessGame.TeamColor mover);
+
+    /**
+     * Called right after {@link ChessBoard#undoMove()} took the move back.
+     */
+    void moveUndone(ChessBoard board, int move, ChessGame.TeamColor mover);
+
+    /**
+     * @return centipawns from the point of view of {@code side}
+     */
+    int evaluate(ChessBoard board, ChessGame.TeamColor side);
+}
@@ -0,0 +1,129 @@
+package chess.eval;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.IntMoveList;
+import chess.MoveGenerator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Times evaluators on the work a search gives them: along random games, every legal
+ * move is made, evaluated and taken back. The moves are worked out beforehand, so the
+ * timings only cover playing them on the board and the evaluator itself, and every
+ * evaluator sees exactly the same sequence.
+ */
+public final class EvaluatorBench {
+
+    private static final int GAMES = 40;
+    private static final int MAX_PLIES = 120;
+    private static final int DEFAULT_HIDDEN = 256;
+    private static final int ROUNDS = 5;
+
+    private EvaluatorBench() {
+    }
+
+    public record Result(long evaluations, long nanos, long checksum) {
+        public long evaluationsPerSecond() {
+            return nanos == 0 ? 0 : evaluations * 1_000_000_000L / nanos;
+        }
+    }
+
+    /**
+     * @return for each random game, its moves followed by the replies tried at every
+     * position: a positive entry is played and evaluated, a 0 takes the last move back,
+     * and a negative entry is played as game move {@code -entry} without being taken back
+     */
+    static int[][] script(long seed) {
+        Random random = new Random(seed);
+        int[][] games = new int[GAMES][];
+        for (int game = 0; game < GAMES; game++) {
+            ChessBoard board = new ChessGame().getBoard().deepCopy();
+            ChessGame.TeamColor side = ChessGame.TeamColor.WHITE;
+            IntMoveList script = new IntMoveList();
+            IntMoveList moves = new IntMoveList();
+            for (int ply = 0; ply < MAX_PLIES; ply++) {
+                moves.clear();
+                MoveGenerator.generateLegal(board, side, moves);
+                if (moves.isEmpty()) {break;}
+                for (int i = 0; i < moves.size(); i++) {
+                    script.add(moves.get(i));
+                    script.add(0);
+                }
+                int move = moves.get(random.nextInt(moves.size()));
+                script.add(-move);
+                board.applyMove(move);
+                side = side == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+            }
+            games[game] = new int[script.size()];
+            for (int i = 0; i < script.size(); i++) {
+                games[game][i] = script.get(i);
+            }
+        }
+        return games;
+    }
+
+    public static Result run(Supplier<? extends Evaluator> evaluators, int[][] games) {
+        long evaluations = 0;
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int[] game : games) {
+            ChessBoard board = new ChessGame().getBoard().deepCopy();
+            Evaluator evaluator = evaluators.get();
+            evaluator.reset(board);
+            ChessGame.TeamColor side = ChessGame.TeamColor.WHITE;
+            ChessGame.TeamColor other = ChessGame.TeamColor.BLACK;
+            int last = 0;
+            for (int entry : game) {
+                if (entry > 0) {
+                    board.applyMove(entry);
+                    evaluator.moveMade(board, entry, side);
+                    checksum += evaluator.evaluate(board, other);
+                    evaluations++;
+                    last = entry;
+                } else if (entry == 0) {
+                    board.undoMove();
+                    evaluator.moveUndone(board, last, side);
+                } else {
+                    board.applyMove(-entry);
+                    evaluator.moveMade(board, -entry, side);
+                    ChessGame.TeamColor swap = side;
+                    side = other;
+                    other = swap;
+                }
+            }
+        }
+        return new Result(evaluations, System.nanoTime() - start, checksum);
+    }
+
+    /**
+     * Usage: {@code EvaluatorBench [network file]}; without a file an untrained network
+     * of {@value #DEFAULT_HIDDEN} hidden neurons is timed, which runs at the same speed.
+     */
+    public static void main(String[] args) throws IOException {
+        Network network = args.length > 0 ? Network.load(Path.of(args[0])) : Network.random(DEFAULT_HIDDEN, 1);
+        int[][] games = script(7);
+        NnueKernel best = NnueKernel.best();
+        report("tapered", TaperedEvaluator::new, games);
+        report("nnue scalar", () -> new NnueEvaluator(network, new ScalarKernel()), games);
+        if (!(best instanceof ScalarKernel)) {
+            report("nnue vector", () -> new NnueEvaluator(network, best), games);
+        } else {
+            System.out.println("nnue vector: unavailable, run with --add-modules jdk.incubator.vector");
+        }
+    }
+
+    private static void report(String name, Supplier<? extends Evaluator> evaluators, int[][] games) {
+        Result result = null;
+        for (int round = 0; round < ROUNDS; round++) {
+            // Later rounds run on JIT-compiled code; the fastest one is reported
+            Result next = run(evaluators, games);
+            if (result == null || next.nanos() < result.nanos()) {result = next;}
+        }
+        System.out.printf("%-12s %,d evaluations  %.1f ms  %,d evals/s  checksum %d%n", name, result.evaluations(),
+                result.nanos() / 1e6, result.evaluationsPerSecond(), result.checksum());
+    }
+}
@@ -0,0 +1,119 @@
+package chess.eval;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ * Quantized weights of a two-layer evaluation network: 768 piece-square inputs feed a
+ * hidden layer of {@link #hidden()} neurons, computed once from each team's point of
+ * view, and both halves, clipped to [0, {@link #QA}], feed a single output. Weights are
+ * immutable once loaded, so one network can be shared by every search thread.
+ * <p>
+ * The file is little-endian: the magic number, the hidden size, then the input weights
+ * ({@code short[768 * hidden]}, one row of {@code hidden} per input), the hidden biases
+ * ({@code short[hidden]}), the output weights ({@code short[2 * hidden]}, the side to
+ * move's half first) and the output bias ({@code int}, already scaled by
+ * {@code QA * QB}).
+ */
+public final class Network {
+
+    public static final int INPUTS = 768;
+    /** Hidden activations are clipped to this, the quantization scale of the first layer. */
+    public static final int QA = 255;
+    /** Quantization scale of the output weights. */
+    public static final int QB = 64;
+    /** Turns the network output into centipawns. */
+    public static final int SCALE = 400;
+
+    private static final int MAGIC = 0x4555_4E4E;
+
+    private final int hidden;
+    final short[] inputWeights;
+    final short[] hiddenBiases;
+    final short[] outputWeights;
+    final int outputBias;
+
+    Network(int hidden, short[] inputWeights, short[] hiddenBiases, short[] outputWeights, int outputBias) {
+        if (hidden <= 0 || inputWeights.length != INPUTS * hidden || hiddenBiases.length != hidden
+                || outputWeights.length != 2 * hidden) {
+            throw new IllegalArgumentException("Layer sizes do not match a hidden layer of " + hidden);
+        }
+        this.hidden = hidden;
+        this.inputWeights = inputWeights;
+        this.hiddenBiases = hiddenBiases;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+    }
+
+    /**
+     * @throws IOException if the file cannot be read or does not hold a network
+     */
+    public static Network load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            int hidden = buffer.remaining() >= 8 && buffer.getInt() == MAGIC ? buffer.getInt() : -1;
+            long expected = (long) (INPUTS + 3) * hidden * Short.BYTES + Integer.BYTES;
+            if (hidden <= 0 || hidden > 4096 || buffer.remaining() != expected) {
+                throw new IOException("Not a network file: " + path);
+            }
+            short[] inputWeights = new short[INPUTS * hidden];
+            short[] hiddenBiases = new short[hidden];
+            short[] outputWeights = new short[2 * hidden];
+            buffer.asShortBuffer().get(inputWeights).get(hiddenBiases).get(outputWeights);
+            buffer.position(buffer.position() + (INPUTS + 3) * hidden * Short.BYTES);
+            return new Network(hidden, inputWeights, hiddenBiases, outputWeights, buffer.getInt());
+        }
+    }
+
+    public void write(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(2 * Integer.BYTES + (INPUTS + 3) * hidden * Short.BYTES + Integer.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(hidden);
+        buffer.asShortBuffer().put(inputWeights).put(hiddenBiases).put(outputWeights);
+        buffer.position(buffer.position() + (INPUTS + 3) * hidden * Short.BYTES);
+        buffer.putInt(outputBias);
+        Files.write(path, buffer.array());
+    }
+
+    /**
+     * Untrained weights, for tests and for timing inference.
+     */
+    static Network random(int hidden, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        short[] inputWeights = new short[INPUTS * hidden];
+        short[] hiddenBiases = new short[hidden];
+        short[] outputWeights = new short[2 * hidden];
+        for (int i = 0; i < inputWeights.length; i++) {
+            inputWeights[i] = (short) random.nextInt(-64, 65);
+        }
+        for (int i = 0; i < hidden; i++) {
+            hiddenBiases[i] = (short) random.nextInt(0, 128);
+        }
+        for (int i = 0; i < outputWeights.length; i++) {
+            outputWeights[i] = (short) random.nextInt(-QB, QB + 1);
+        }
+        return new Network(hidden, inputWeights, hiddenBiases, outputWeights, random.nextInt(-QA * QB, QA * QB));
+    }
+
+    public int hidden() {
+        return hidden;
+    }
+
+    /**
+     * @param perspective the team the features are seen from, which always plays up
+     *                    the board
+     * @return row of {@link #inputWeights} for a piece ({@code color * 6 + type ordinal})
+     * on a square
+     */
+    static int feature(int perspective, int piece, int square) {
+        if (perspective == 0) {return piece * 64 + square;}
+        return (piece < 6 ? piece + 6 : piece - 6) * 64 + (square ^ 56);
+    }
+}
@@ -0,0 +1,101 @@
+package chess.eval;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.Move;
+
+import java.util.Arrays;
+
+/**
+ * Evaluates with a {@link Network}. The hidden layer before clipping, the accumulator,
+ * is kept for both teams' points of view as int16 values and updated on every move by
+ * adding and subtracting the weight rows of the two or three pieces that changed,
+ * instead of summing all the pieces on the board. Each move pushes a copy onto a stack,
+ * so taking it back is just a pop, and an evaluation is only the output layer.
+ */
+public class NnueEvaluator implements Evaluator {
+
+    private final Network network;
+    private final NnueKernel kernel;
+    private final int hidden;
+
+    /** Accumulators by ply, white's point of view then black's, {@code 2 * hidden} each. */
+    private short[] stack;
+    private int top;
+
+    public NnueEvaluator(Network network) {
+        this(network, NnueKernel.best());
+    }
+
+    NnueEvaluator(Network network, NnueKernel kernel) {
+        this.network = network;
+        this.kernel = kernel;
+        this.hidden = network.hidden();
+        this.stack = new short[2 * hidden * 160];
+    }
+
+    /**
+     * @return true if inference runs on the Vector API rather than plain loops
+     */
+    public boolean isVectorized() {
+        return !(kernel instanceof ScalarKernel);
+    }
+
+    @Override
+    public void reset(ChessBoard board) {
+        top = 0;
+        System.arraycopy(network.hiddenBiases, 0, stack, 0, hidden);
+        System.arraycopy(network.hiddenBiases, 0, stack, hidden, hidden);
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = board.getPiece(square);
+            if (piece != null) {
+                add(piece.getTeamColor().ordinal() * 6 + piece.getPieceType().ordinal(), square);
+            }
+        }
+    }
+
+    @Override
+    public void moveMade(ChessBoard board, int move, ChessGame.TeamColor mover) {
+        int size = 2 * hidden;
+        if ((top + 2) * size > stack.length) {stack = Arrays.copyOf(stack, stack.length * 2);}
+        System.arraycopy(stack, top * size, stack, (top + 1) * size, size);
+        top++;
+
+        int side = mover.ordinal() * 6;
+        ChessPiece.PieceType promotion = Move.promotion(move);
+        ChessPiece.PieceType captured = Move.captured(move);
+        subtract(side + Move.moved(move).ordinal(), Move.from(move));
+        add(side + (promotion == null ? Move.moved(move) : promotion).ordinal(), Move.to(move));
+        if (captured != null) {subtract(6 - side + captured.ordinal(), Move.to(move));}
+    }
+
+    @Override
+    public void moveUndone(ChessBoard board, int move, ChessGame.TeamColor mover) {
+        top--;
+    }
+
+    @Override
+    public int evaluate(ChessBoard board, ChessGame.TeamColor side) {
+        int base = top * 2 * hidden;
+        int us = base + side.ordinal() * hidden;
+        int them = base + (hidden - side.ordinal() * hidden);
+        int output = kernel.dot(stack, us, network.outputWeights, 0, hidden)
+                + kernel.dot(stack, them, network.outputWeights, hidden, hidden)
+                + network.outputBias;
+        return (int) ((long) output * Network.SCALE / (Network.QA * Network.QB));
+    }
+
+    private void add(int piece, int square) {
+        int base = top * 2 * hidden;
+        kernel.add(stack, base, network.inputWeights, Network.feature(0, piece, square) * hidden, hidden);
+        kernel.add(stack, base + hidden, network.inputWeights, Network.feature(1, piece, square) * hidden, hidden);
+    }
+
+    private void subtract(int piece, int square) {
+        int base = top * 2 * hidden;
+        kernel.subtract(stack, base, network.inputWeights, Network.feature(0, piece, square) * hidden, hidden);
+        kernel.subtract(stack, base + hidden, network.inputWeights, Network.feature(1, piece, square) * hidden,
+                hidden);
+    }
+}
@@ -0,0 +1,37 @@
+package chess.eval;
+
+/**
+ * The arithmetic behind {@link NnueEvaluator}, kept apart so it can run on SIMD lanes
+ * where the JVM offers them and as plain loops everywhere else.
+ */
+interface NnueKernel {
+
+    /**
+     * {@code accumulator[offset + i] += weights[row + i]} for every hidden neuron.
+     */
+    void add(short[] accumulator, int offset, short[] weights, int row, int length);
+
+    /**
+     * {@code accumulator[offset + i] -= weights[row + i]} for every hidden neuron.
+     */
+    void subtract(short[] accumulator, int offset, short[] weights, int row, int length);
+
+    /**
+     * @return the sum over the hidden neurons of the activation clipped to
+     * [0, {@link Network#QA}] times its output weight
+     */
+    int dot(short[] accumulator, int offset, short[] weights, int row, int length);
+
+    /**
+     * @return the Vector API kernel when the {@code jdk.incubator.vector} module is
+     * available, otherwise the scalar one
+     */
+    static NnueKernel best() {
+        try {
+            // Loaded by name so that a JVM without the module never links against it
+            return (NnueKernel) Class.forName("chess.eval.VectorKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarKernel();
+        }
+    }
+}
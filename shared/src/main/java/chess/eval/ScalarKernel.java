@@ -0,0 +1,31 @@
+package chess.eval;
+
+/**
+ * Plain loops, which the JIT may still auto-vectorize.
+ */
+final class ScalarKernel implements NnueKernel {
+
+    @Override
+    public void add(short[] accumulator, int offset, short[] weights, int row, int length) {
+        for (int i = 0; i < length; i++) {
+            accumulator[offset + i] += weights[row + i];
+        }
+    }
+
+    @Override
+    public void subtract(short[] accumulator, int offset, short[] weights, int row, int length) {
+        for (int i = 0; i < length; i++) {
+            accumulator[offset + i] -= weights[row + i];
+        }
+    }
+
+    @Override
+    public int dot(short[] accumulator, int offset, short[] weights, int row, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            int activation = Math.max(0, Math.min(Network.QA, accumulator[offset + i]));
+            sum += activation * weights[row + i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,72 @@
+package chess.eval;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.Move;
+
+/**
+ * Material plus piece-square tables, scored separately for the middlegame and the
+ * endgame and blended by how much non-pawn material is left. Both sums and the phase
+ * are adjusted by the few table entries a move touches, so evaluating a leaf is a
+ * single multiply and divide.
+ */
+public class TaperedEvaluator implements Evaluator {
+
+    /** White minus black, piece values included. */
+    private int midgame;
+    private int endgame;
+    private int phase;
+
+    @Override
+    public void reset(ChessBoard board) {
+        midgame = 0;
+        endgame = 0;
+        phase = 0;
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = board.getPiece(square);
+            if (piece != null) {
+                add(piece.getTeamColor().ordinal() * 6 + piece.getPieceType().ordinal(), square);
+            }
+        }
+    }
+
+    @Override
+    public void moveMade(ChessBoard board, int move, ChessGame.TeamColor mover) {
+        int side = mover.ordinal() * 6;
+        ChessPiece.PieceType promotion = Move.promotion(move);
+        ChessPiece.PieceType captured = Move.captured(move);
+        remove(side + Move.moved(move).ordinal(), Move.from(move));
+        add(side + (promotion == null ? Move.moved(move) : promotion).ordinal(), Move.to(move));
+        if (captured != null) {remove(6 - side + captured.ordinal(), Move.to(move));}
+    }
+
+    @Override
+    public void moveUndone(ChessBoard board, int move, ChessGame.TeamColor mover) {
+        int side = mover.ordinal() * 6;
+        ChessPiece.PieceType promotion = Move.promotion(move);
+        ChessPiece.PieceType captured = Move.captured(move);
+        if (captured != null) {add(6 - side + captured.ordinal(), Move.to(move));}
+        remove(side + (promotion == null ? Move.moved(move) : promotion).ordinal(), Move.to(move));
+        add(side + Move.moved(move).ordinal(), Move.from(move));
+    }
+
+    @Override
+    public int evaluate(ChessBoard board, ChessGame.TeamColor side) {
+        int weight = Math.min(phase, PieceSquareTables.MAX_PHASE);
+        int score = (midgame * weight + endgame * (PieceSquareTables.MAX_PHASE - weight)) / PieceSquareTables.MAX_PHASE;
+        return side == ChessGame.TeamColor.WHITE ? score : -score;
+    }
+
+    private void add(int piece, int square) {
+        midgame += PieceSquareTables.MIDGAME[piece][square];
+        endgame += PieceSquareTables.ENDGAME[piece][square];
+        phase += PieceSquareTables.PHASE[piece % 6];
+    }
+
+    private void remove(int piece, int square) {
+        midgame -= PieceSquareTables.MIDGAME[piece][square];
+        endgame -= PieceSquareTables.ENDGAME[piece][square];
+        phase -= PieceSquareTables.PHASE[piece % 6];
+    }
+}
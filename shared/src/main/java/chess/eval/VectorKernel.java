@@ -0,0 +1,64 @@
+package chess.eval;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD version of the kernel on the preferred vector width. The clipped activations
+ * are widened to ints before multiplying, since activation times weight overflows a
+ * short. Only ever loaded through {@link NnueKernel#best()}.
+ */
+final class VectorKernel implements NnueKernel {
+
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public void add(short[] accumulator, int offset, short[] weights, int row, int length) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(length); i < bound; i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, accumulator, offset + i)
+                    .add(ShortVector.fromArray(SHORTS, weights, row + i))
+                    .intoArray(accumulator, offset + i);
+        }
+        for (; i < length; i++) {
+            accumulator[offset + i] += weights[row + i];
+        }
+    }
+
+    @Override
+    public void subtract(short[] accumulator, int offset, short[] weights, int row, int length) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(length); i < bound; i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, accumulator, offset + i)
+                    .sub(ShortVector.fromArray(SHORTS, weights, row + i))
+                    .intoArray(accumulator, offset + i);
+        }
+        for (; i < length; i++) {
+            accumulator[offset + i] -= weights[row + i];
+        }
+    }
+
+    @Override
+    public int dot(short[] accumulator, int offset, short[] weights, int row, int length) {
+        IntVector sum = IntVector.zero(INTS);
+        int i = 0;
+        for (int bound = SHORTS.loopBound(length); i < bound; i += SHORTS.length()) {
+            ShortVector activation = ShortVector.fromArray(SHORTS, accumulator, offset + i)
+                    .max((short) 0).min((short) Network.QA);
+            ShortVector weight = ShortVector.fromArray(SHORTS, weights, row + i);
+            for (int part = 0; part < 2; part++) {
+                IntVector wide = (IntVector) activation.convertShape(VectorOperators.S2I, INTS, part);
+                sum = sum.add(wide.mul((IntVector) weight.convertShape(VectorOperators.S2I, INTS, part)));
+            }
+        }
+        int total = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            int activation = Math.max(0, Math.min(Network.QA, accumulator[offset + i]));
+            total += activation * weights[row + i];
+        }
+        return total;
+    }
+}
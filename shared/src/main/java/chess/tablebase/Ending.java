@@ -0,0 +1,99 @@
+package chess.tablebase;
+
+import chess.ChessGame;
+import chess.ChessPiece;
+
+/**
+ * The endings with a table: a strong king with one or two pieces against a lone king.
+ * Positions are indexed with the strong side as white moving up the board, its king
+ * folded by symmetry into the a1-d1-d4 triangle (files a to d with a pawn, since then
+ * only the left-right mirror keeps the position the same), and the index laid out as
+ * <pre>
+ * ((king region * 64 + weak king) * 64 + first piece) [* 64 + second piece] * 2 + side to move
+ * </pre>
+ * with side to move {@link #STRONG} or {@link #WEAK}.
+ */
+public enum Ending {
+    KQK(ChessPiece.PieceType.QUEEN),
+    KRK(ChessPiece.PieceType.ROOK),
+    KPK(ChessPiece.PieceType.PAWN),
+    KBNK(ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.KNIGHT);
+
+    public static final int STRONG = 0;
+    public static final int WEAK = 1;
+
+    private final ChessPiece.PieceType[] pieces;
+    private final boolean pawn;
+
+    Ending(ChessPiece.PieceType... pieces) {
+        this.pieces = pieces;
+        this.pawn = pieces[0] == ChessPiece.PieceType.PAWN;
+    }
+
+    /**
+     * @return the strong side's pieces besides its king
+     */
+    public int pieceCount() {
+        return pieces.length;
+    }
+
+    public ChessPiece.PieceType piece(int index) {
+        return pieces[index];
+    }
+
+    public boolean hasPawn() {
+        return pawn;
+    }
+
+    /**
+     * @return number of positions in the table, legal or not
+     */
+    public int size() {
+        return Squares.kingRegion(pawn) * 64 * (1 << (6 * pieces.length)) * 2;
+    }
+
+    public String fileName() {
+        return name() + ".tb";
+    }
+
+    /**
+     * @return the {@link chess.ChessBoard#getMaterial()} signature of this ending with
+     * {@code strong} holding the pieces
+     */
+    public long material(ChessGame.TeamColor strong) {
+        int strongSide = strong.ordinal() * 6;
+        int weakSide = 6 - strongSide;
+        long material = 1L << ((strongSide + ChessPiece.PieceType.KING.ordinal()) * 4)
+                | 1L << ((weakSide + ChessPiece.PieceType.KING.ordinal()) * 4);
+        for (ChessPiece.PieceType piece : pieces) {
+            material += 1L << ((strongSide + piece.ordinal()) * 4);
+        }
+        return material;
+    }
+
+    /**
+     * @param second ignored when the ending has one piece
+     * @return table index of the position, with squares as seen by the strong side
+     * playing white
+     */
+    public int index(int strongKing, int weakKing, int first, int second, int sideToMove) {
+        int transform = Squares.transform(pawn, strongKing);
+        strongKing = Squares.apply(transform, strongKing);
+        weakKing = Squares.apply(transform, weakKing);
+        first = Squares.apply(transform, first);
+        second = Squares.apply(transform, second);
+        // A king on the a1-h8 diagonal stays in the triangle when mirrored across it, so
+        // the first other piece off the diagonal decides which of the two is used
+        if (!pawn && Squares.onDiagonal(strongKing) && Squares.aboveDiagonal(weakKing, first,
+                pieces.length > 1 ? second : first)) {
+            weakKing = Squares.apply(Squares.TRANSPOSE, weakKing);
+            first = Squares.apply(Squares.TRANSPOSE, first);
+            second = Squares.apply(Squares.TRANSPOSE, second);
+        }
+        int index = Squares.kingIndex(pawn, strongKing);
+        index = index * 64 + weakKing;
+        index = index * 64 + first;
+        if (pieces.length > 1) {index = index * 64 + second;}
+        return index * 2 + sideToMove;
+    }
+}
@@ -0,0 +1,98 @@
+package chess.tablebase;
+
+/**
+ * Board symmetries and the king regions the tables are indexed by, for squares
+ * indexed 0 for a1 up to 63 for h8.
+ */
+final class Squares {
+
+    /** The {@link #apply} transform that mirrors the board across the a1-h8 diagonal. */
+    static final int TRANSPOSE = 4;
+
+    /** Transform that brings a strong king square into its region, per square. */
+    private static final int[] TRANSFORM = new int[64];
+    private static final int[] PAWN_TRANSFORM = new int[64];
+    /** Position of a square within the king region, -1 outside it. */
+    private static final int[] KING_INDEX = new int[64];
+    private static final int[] PAWN_KING_INDEX = new int[64];
+    private static final int[] KING_SQUARE = new int[10];
+    private static final int[] PAWN_KING_SQUARE = new int[32];
+
+    static {
+        int triangle = 0;
+        int half = 0;
+        for (int square = 0; square < 64; square++) {
+            int row = square >>> 3;
+            int col = square & 7;
+            KING_INDEX[square] = -1;
+            PAWN_KING_INDEX[square] = -1;
+            if (col <= 3 && row <= col) {
+                KING_SQUARE[triangle] = square;
+                KING_INDEX[square] = triangle++;
+            }
+            if (col <= 3) {
+                PAWN_KING_SQUARE[half] = square;
+                PAWN_KING_INDEX[square] = half++;
+            }
+        }
+        for (int square = 0; square < 64; square++) {
+            PAWN_TRANSFORM[square] = (square & 7) <= 3 ? 0 : 1;
+            for (int transform = 7; transform >= 0; transform--) {
+                if (KING_INDEX[apply(transform, square)] >= 0) {TRANSFORM[square] = transform;}
+            }
+        }
+    }
+
+    private Squares() {
+    }
+
+    /**
+     * @param transform bit 0 mirrors the files, bit 1 the ranks, bit 2 swaps files and
+     *                  ranks; together they make the eight symmetries of the board
+     */
+    static int apply(int transform, int square) {
+        int row = square >>> 3;
+        int col = square & 7;
+        if ((transform & 1) != 0) {col = 7 - col;}
+        if ((transform & 2) != 0) {row = 7 - row;}
+        if ((transform & 4) != 0) {
+            int swap = row;
+            row = col;
+            col = swap;
+        }
+        return row * 8 + col;
+    }
+
+    /**
+     * @return the transform that moves the strong king into its region; only the file
+     * mirror is allowed with pawns on the board
+     */
+    static int transform(boolean pawn, int strongKing) {
+        return pawn ? PAWN_TRANSFORM[strongKing] : TRANSFORM[strongKing];
+    }
+
+    static boolean onDiagonal(int square) {
+        return square >>> 3 == (square & 7);
+    }
+
+    /**
+     * @return true if the first of the squares off the a1-h8 diagonal lies above it
+     */
+    static boolean aboveDiagonal(int first, int second, int third) {
+        if (!onDiagonal(first)) {return first >>> 3 > (first & 7);}
+        if (!onDiagonal(second)) {return second >>> 3 > (second & 7);}
+        return third >>> 3 > (third & 7);
+    }
+
+    static int kingRegion(boolean pawn) {
+        return pawn ? PAWN_KING_SQUARE.length : KING_SQUARE.length;
+    }
+
+    static int kingIndex(boolean pawn, int square) {
+        return pawn ? PAWN_KING_INDEX[square] : KING_INDEX[square];
+    }
+
+    static int kingSquare(boolean pawn, int index) {
+        return pawn ? PAWN_KING_SQUARE[index] : KING_SQUARE[index];
+    }
+}
@@ -0,0 +1,124 @@
+package chess.tablebase;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.engine.Score;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exact results for the {@link Ending}s, read from files written by
+ * {@link TablebaseGenerator} and memory-mapped so a probe is a few array lookups with
+ * no allocation. A file starts with a 16-byte header (magic, ending ordinal, bits per
+ * entry, entry count) followed by the entries packed big-endian at the narrowest width
+ * that holds the longest mate.
+ */
+public final class Tablebase {
+
+    static final int MAGIC = 0x43544231;
+    private static final int HEADER_BYTES = 16;
+
+    /** Returned by {@link #probe} for positions without a table. */
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    /** Knows no endings; every probe is {@link #UNKNOWN}. */
+    public static final Tablebase NONE = new Tablebase(new Table[0]);
+
+    private record Table(Ending ending, ByteBuffer entries, int width, long whiteMaterial, long blackMaterial) {
+
+        int read(int index) {
+            long bit = (long) index * width;
+            long word = entries.getLong(HEADER_BYTES + (int) (bit >>> 3));
+            return (int) (word >>> (64 - width - (bit & 7))) & ((1 << width) - 1);
+        }
+    }
+
+    private final Table[] tables;
+
+    private Tablebase(Table[] tables) {
+        this.tables = tables;
+    }
+
+    /**
+     * Maps every ending file found in the directory; endings without a file are
+     * simply not probed.
+     *
+     * @throws IOException if a file cannot be read or was not written for its ending
+     */
+    public static Tablebase open(Path directory) throws IOException {
+        List<Table> tables = new ArrayList<>();
+        for (Ending ending : Ending.values()) {
+            Path path = directory.resolve(ending.fileName());
+            if (!Files.isRegularFile(path)) {continue;}
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long length = channel.size();
+                ByteBuffer entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, length).order(ByteOrder.BIG_ENDIAN);
+                int width = length < HEADER_BYTES ? 0 : entries.getInt(8);
+                if (width < 1 || width > 8 || entries.getInt(0) != MAGIC || entries.getInt(4) != ending.ordinal()
+                        || entries.getInt(12) != ending.size()
+                        || length < HEADER_BYTES + ((long) ending.size() * width + 7) / 8 + Long.BYTES) {
+                    throw new IOException("Not a tablebase file for " + ending + ": " + path);
+                }
+                tables.add(new Table(ending, entries, width, ending.material(ChessGame.TeamColor.WHITE),
+                        ending.material(ChessGame.TeamColor.BLACK)));
+            }
+        }
+        return new Tablebase(tables.toArray(new Table[0]));
+    }
+
+    public boolean contains(Ending ending) {
+        for (Table table : tables) {
+            if (table.ending == ending) {return true;}
+        }
+        return false;
+    }
+
+    /**
+     * @return the exact score for the team to move in the same terms as a search
+     * score with the position itself at ply 0: {@link Score#MATE} minus the plies to
+     * mate, negated when the team to move gets mated, {@link Score#DRAW} for draws, or
+     * {@link #UNKNOWN} if no table covers the material on the board
+     */
+    public int probe(ChessBoard board, ChessGame.TeamColor side) {
+        long material = board.getMaterial();
+        for (Table table : tables) {
+            ChessGame.TeamColor strong;
+            if (material == table.whiteMaterial) {
+                strong = ChessGame.TeamColor.WHITE;
+            } else if (material == table.blackMaterial) {
+                strong = ChessGame.TeamColor.BLACK;
+            } else {
+                continue;
+            }
+            ChessGame.TeamColor weak = strong == ChessGame.TeamColor.WHITE
+                    ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+            // Tables are built with the strong side playing up the board as white
+            int flip = strong == ChessGame.TeamColor.WHITE ? 0 : 56;
+            Ending ending = table.ending;
+            int first = Long.numberOfTrailingZeros(board.getPieces(strong, ending.piece(0))) ^ flip;
+            int second = ending.pieceCount() > 1
+                    ? Long.numberOfTrailingZeros(board.getPieces(strong, ending.piece(1))) ^ flip : 0;
+            int value = table.read(ending.index(board.getKingSquare(strong) ^ flip, board.getKingSquare(weak) ^ flip,
+                    first, second, side == strong ? Ending.STRONG : Ending.WEAK));
+            if (value == 0) {return Score.DRAW;}
+            return side == strong ? Score.MATE - (value - 1) : -Score.MATE + (value - 1);
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Looks up the game's current position, e.g. to announce a forced mate with
+     * {@link Score#toString(int)} while the game is still going.
+     */
+    public int probe(ChessGame game) {
+        return probe(game.getBoard(), game.getTeamTurn());
+    }
+}
@@ -0,0 +1,326 @@
+package chess.tablebase;
+
+import chess.Attacks;
+import chess.ChessGame;
+import chess.ChessPiece;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Solves the {@link Ending}s by retrograde analysis. Checkmates are found first; then
+ * each round walks back one ply from the positions decided in the round before: a
+ * position where the strong side can move into a lost position is won, and a position
+ * where every move of the lone king leads to a won position is lost. Rounds run until
+ * nothing changes, and whatever is left undecided is a draw. Each round is split
+ * across cores with a parallel stream.
+ * <p>
+ * Entries hold the distance to mate in plies plus one, or 0 for draws and illegal
+ * positions. Captures by the lone king leave the table as draws, and a pawn reaching
+ * the last rank continues in the {@link Ending#KQK} or {@link Ending#KRK} table, so
+ * those are solved first. The fifty-move rule is not taken into account.
+ */
+public final class TablebaseGenerator {
+
+    private static final int CHUNK = 1 << 12;
+
+    private final Map<Ending, byte[]> solved = new EnumMap<>(Ending.class);
+
+    /**
+     * @return the solved table for the ending, indexed by {@link Ending#index}
+     */
+    public synchronized byte[] generate(Ending ending) {
+        byte[] cached = solved.get(ending);
+        if (cached != null) {return cached;}
+
+        byte[] promotions = ending.hasPawn() ? promotions(ending) : null;
+        byte[] table = new byte[ending.size()];
+        forEach(ending.size(), index -> {
+            if (isMate(ending, index)) {table[index] = 1;}
+            return 0;
+        });
+
+        int lastPromotion = 0;
+        if (promotions != null) {
+            for (byte value : promotions) {
+                lastPromotion = Math.max(lastPromotion, value & 0xFF);
+            }
+        }
+        for (int plies = 1; plies < 255; plies++) {
+            int current = plies;
+            int found = forEach(ending.size(), index -> {
+                if ((table[index] & 0xFF) != current) {return 0;}
+                return current % 2 == 1 ? markWins(ending, table, index, current)
+                        : markLosses(ending, table, index, current);
+            });
+            if (promotions != null && plies % 2 == 1) {
+                found += forEach(ending.size(), index -> {
+                    if ((promotions[index] & 0xFF) != current + 1 || table[index] != 0) {return 0;}
+                    table[index] = (byte) (current + 1);
+                    return 1;
+                });
+            }
+            if (found == 0 && plies >= lastPromotion) {break;}
+        }
+        solved.put(ending, table);
+        return table;
+    }
+
+    /**
+     * Writes the solved ending to {@code directory} as a {@link Tablebase} file.
+     */
+    public void write(Path directory, Ending ending) throws IOException {
+        byte[] table = generate(ending);
+        int max = 0;
+        for (byte value : table) {
+            max = Math.max(max, value & 0xFF);
+        }
+        int width = Math.max(1, 32 - Integer.numberOfLeadingZeros(max));
+
+        byte[] packed = new byte[(int) (((long) table.length * width + 7) / 8) + Long.BYTES];
+        long bit = 0;
+        for (byte value : table) {
+            for (int b = width - 1; b >= 0; b--, bit++) {
+                if ((value >>> b & 1) != 0) {packed[(int) (bit >>> 3)] |= (byte) (0x80 >>> (bit & 7));}
+            }
+        }
+        Files.createDirectories(directory);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(directory.resolve(ending.fileName()))))) {
+            out.writeInt(Tablebase.MAGIC);
+            out.writeInt(ending.ordinal());
+            out.writeInt(width);
+            out.writeInt(table.length);
+            out.write(packed);
+        }
+    }
+
+    /**
+     * Strong side to move with a pawn about to promote: the best result reachable by
+     * promoting to a queen or a rook, in the same encoding as the table.
+     */
+    private byte[] promotions(Ending ending) {
+        Ending[] promoted = {Ending.KQK, Ending.KRK};
+        byte[][] tables = {generate(Ending.KQK), generate(Ending.KRK)};
+        byte[] promotions = new byte[ending.size()];
+        forEach(ending.size(), index -> {
+            if ((index & 1) != Ending.STRONG || !isLegal(ending, index)) {return 0;}
+            int pawn = first(ending, index);
+            int target = pawn + 8;
+            if (pawn >>> 3 != 6 || target == strongKing(ending, index) || target == weakKing(ending, index)) {return 0;}
+
+            int best = 0;
+            for (int piece = 0; piece < promoted.length; piece++) {
+                // The lone king is mated in (value - 1) plies, one more for the promotion itself
+                int value = tables[piece][promoted[piece].index(strongKing(ending, index), weakKing(ending, index),
+                        target, 0, Ending.WEAK)] & 0xFF;
+                if (value != 0 && (best == 0 || value + 1 < best)) {best = value + 1;}
+            }
+            promotions[index] = (byte) best;
+            return 0;
+        });
+        return promotions;
+    }
+
+    /**
+     * Odd rounds: the lone king was mated in {@code plies - 1} at {@code index}, so every
+     * strong move leading there wins in {@code plies}.
+     */
+    private static int markWins(Ending ending, byte[] table, int index, int plies) {
+        int strongKing = strongKing(ending, index);
+        int weakKing = weakKing(ending, index);
+        int first = first(ending, index);
+        int second = second(ending, index);
+        long occupied = occupied(ending, index);
+        int found = 0;
+
+        for (long from = Attacks.king(strongKing) & ~occupied & ~Attacks.king(weakKing); from != 0; from &= from - 1) {
+            found += markWin(ending, table, Long.numberOfTrailingZeros(from), weakKing, first, second, plies);
+        }
+        for (int piece = 0; piece < ending.pieceCount(); piece++) {
+            int square = piece == 0 ? first : second;
+            long from;
+            if (ending.piece(piece) == ChessPiece.PieceType.PAWN) {
+                from = 0;
+                int row = square >>> 3;
+                if (row >= 2 && (occupied & 1L << (square - 8)) == 0) {
+                    from |= 1L << (square - 8);
+                    if (row == 3 && (occupied & 1L << (square - 16)) == 0) {from |= 1L << (square - 16);}
+                }
+            } else {
+                from = attacks(ending.piece(piece), square, occupied) & ~occupied;
+            }
+            for (; from != 0; from &= from - 1) {
+                int previous = Long.numberOfTrailingZeros(from);
+                found += piece == 0
+                        ? markWin(ending, table, strongKing, weakKing, previous, second, plies)
+                        : markWin(ending, table, strongKing, weakKing, first, previous, plies);
+            }
+        }
+        return found;
+    }
+
+    private static int markWin(Ending ending, byte[] table, int strongKing, int weakKing, int first, int second,
+                               int plies) {
+        if (!isLegal(ending, strongKing, weakKing, first, second, Ending.STRONG)) {return 0;}
+        int index = ending.index(strongKing, weakKing, first, second, Ending.STRONG);
+        if (table[index] != 0) {return 0;}
+        table[index] = (byte) (plies + 1);
+        return 1;
+    }
+
+    /**
+     * Even rounds: the strong side won in {@code plies - 1} at {@code index}, so a lone
+     * king move leading there loses in {@code plies} if all its other moves lose too.
+     */
+    private static int markLosses(Ending ending, byte[] table, int index, int plies) {
+        int strongKing = strongKing(ending, index);
+        int weakKing = weakKing(ending, index);
+        int first = first(ending, index);
+        int second = second(ending, index);
+        long occupied = occupied(ending, index);
+        int found = 0;
+
+        for (long from = Attacks.king(weakKing) & ~occupied & ~Attacks.king(strongKing); from != 0; from &= from - 1) {
+            int previous = Long.numberOfTrailingZeros(from);
+            if (!isLegal(ending, strongKing, previous, first, second, Ending.WEAK)) {continue;}
+            int candidate = ending.index(strongKing, previous, first, second, Ending.WEAK);
+            if (table[candidate] == 0 && allMovesLose(ending, table, candidate)) {
+                table[candidate] = (byte) (plies + 1);
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static boolean allMovesLose(Ending ending, byte[] table, int index) {
+        int strongKing = strongKing(ending, index);
+        int weakKing = weakKing(ending, index);
+        int first = first(ending, index);
+        int second = second(ending, index);
+        long occupied = occupied(ending, index) & ~(1L << weakKing);
+
+        for (long to = Attacks.king(weakKing) & ~Attacks.king(strongKing); to != 0; to &= to - 1) {
+            int target = Long.numberOfTrailingZeros(to);
+            if (attacked(ending, target, strongKing, first, second, occupied)) {continue;}
+            // A safe capture leaves a bare king or a lone minor piece: a draw
+            if ((occupied & 1L << target) != 0) {return false;}
+            if (table[ending.index(strongKing, target, first, second, Ending.STRONG)] == 0) {return false;}
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the lone king is to move, in check and without a legal move
+     */
+    private static boolean isMate(Ending ending, int index) {
+        if ((index & 1) != Ending.WEAK || !isLegal(ending, index)) {return false;}
+        int strongKing = strongKing(ending, index);
+        int weakKing = weakKing(ending, index);
+        int first = first(ending, index);
+        int second = second(ending, index);
+        long occupied = occupied(ending, index);
+        if (!attacked(ending, weakKing, strongKing, first, second, occupied)) {return false;}
+
+        occupied &= ~(1L << weakKing);
+        for (long to = Attacks.king(weakKing) & ~Attacks.king(strongKing); to != 0; to &= to - 1) {
+            if (!attacked(ending, Long.numberOfTrailingZeros(to), strongKing, first, second, occupied)) {return false;}
+        }
+        return true;
+    }
+
+    /**
+     * @return true if a strong piece other than one standing on {@code square} attacks it
+     */
+    private static boolean attacked(Ending ending, int square, int strongKing, int first, int second, long occupied) {
+        if ((Attacks.king(strongKing) & 1L << square) != 0) {return true;}
+        if (first != square && (attacks(ending.piece(0), first, occupied) & 1L << square) != 0) {return true;}
+        return ending.pieceCount() > 1 && second != square
+                && (attacks(ending.piece(1), second, occupied) & 1L << square) != 0;
+    }
+
+    /**
+     * @return squares a strong piece of the type attacks; the strong side is white
+     */
+    private static long attacks(ChessPiece.PieceType type, int square, long occupied) {
+        return Attacks.of(type, ChessGame.TeamColor.WHITE, square, occupied);
+    }
+
+    private static boolean isLegal(Ending ending, int index) {
+        return isLegal(ending, strongKing(ending, index), weakKing(ending, index), first(ending, index),
+                second(ending, index), index & 1);
+    }
+
+    private static boolean isLegal(Ending ending, int strongKing, int weakKing, int first, int second, int sideToMove) {
+        if (strongKing == weakKing || first == strongKing || first == weakKing) {return false;}
+        if (ending.pieceCount() > 1 && (second == strongKing || second == weakKing || second == first)) {return false;}
+        if ((Attacks.king(strongKing) & 1L << weakKing) != 0) {return false;}
+        if (ending.hasPawn() && (first < 8 || first >= 56)) {return false;}
+        long occupied = 1L << strongKing | 1L << weakKing | 1L << first | (ending.pieceCount() > 1 ? 1L << second : 0);
+        return sideToMove == Ending.WEAK || !attacked(ending, weakKing, strongKing, first, second, occupied);
+    }
+
+    private static int strongKing(Ending ending, int index) {
+        return Squares.kingSquare(ending.hasPawn(), index >>> (1 + 6 * (ending.pieceCount() + 1)));
+    }
+
+    private static int weakKing(Ending ending, int index) {
+        return index >>> (1 + 6 * ending.pieceCount()) & 63;
+    }
+
+    private static int first(Ending ending, int index) {
+        return index >>> (1 + 6 * (ending.pieceCount() - 1)) & 63;
+    }
+
+    private static int second(Ending ending, int index) {
+        return ending.pieceCount() > 1 ? index >>> 1 & 63 : 0;
+    }
+
+    private static long occupied(Ending ending, int index) {
+        long occupied = 1L << strongKing(ending, index) | 1L << weakKing(ending, index) | 1L << first(ending, index);
+        return ending.pieceCount() > 1 ? occupied | 1L << second(ending, index) : occupied;
+    }
+
+    /**
+     * Runs the task over every index in parallel chunks.
+     *
+     * @return the sum of what the task returned
+     */
+    private static int forEach(int size, IntUnaryOperator task) {
+        return IntStream.range(0, (size + CHUNK - 1) / CHUNK).parallel().map(chunk -> {
+            int sum = 0;
+            for (int index = chunk * CHUNK, end = Math.min(size, index + CHUNK); index < end; index++) {
+                sum += task.applyAsInt(index);
+            }
+            return sum;
+        }).sum();
+    }
+
+    /**
+     * Solves and writes every ending. Usage: {@code TablebaseGenerator <directory> [ending...]}
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Path.of(args.length > 0 ? args[0] : "tablebases");
+        TablebaseGenerator generator = new TablebaseGenerator();
+        Ending[] endings = Ending.values();
+        if (args.length > 1) {
+            endings = new Ending[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                endings[i - 1] = Ending.valueOf(args[i].toUpperCase());
+            }
+        }
+        for (Ending ending : endings) {
+            long start = System.nanoTime();
+            generator.write(directory, ending);
+            System.out.printf("%s: %d positions in %d ms%n", ending, ending.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+}
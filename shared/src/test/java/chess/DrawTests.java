@@ -0,0 +1,123 @@
+package chess;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class DrawTests {
+
+    @Test
+    public void testThreefoldRepetition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        shuffleKnights(game);
+        Assertions.assertEquals(2, game.repetitionCount());
+        Assertions.assertFalse(game.getGameStatus().isOver());
+
+        shuffleKnights(game);
+        Assertions.assertEquals(3, game.repetitionCount());
+        Assertions.assertEquals(GameStatus.State.THREEFOLD_REPETITION, game.getGameStatus().state());
+        Assertions.assertTrue(game.getGameStatus().isDraw());
+    }
+
+    @Test
+    public void testRepetitionSurvivesSerialization() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        shuffleKnights(game);
+        shuffleKnights(game);
+        ChessGame copy = new Gson().fromJson(new Gson().toJson(game), ChessGame.class);
+        Assertions.assertEquals(game.positionKey(), copy.positionKey());
+        Assertions.assertEquals(GameStatus.State.THREEFOLD_REPETITION, copy.getGameStatus().state());
+    }
+
+    @Test
+    public void testSavesOnlyPositionsSinceLastPawnMove() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        game.makeMove(new ChessMove(ChessPosition.of(7, 5), ChessPosition.of(5, 5), null));
+        shuffleKnights(game);
+        JsonObject json = new Gson().toJsonTree(game).getAsJsonObject();
+        Assertions.assertEquals(5, json.getAsJsonArray("history").size());
+        Assertions.assertArrayEquals(game.positionHistory(),
+                new Gson().fromJson(json, ChessGame.class).positionHistory());
+    }
+
+    @Test
+    public void testHistoryWrapsAroundInLongGames() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        for (int i = 0; i < 40; i++) {
+            shuffleKnights(game);
+        }
+        long[] keys = game.positionHistory();
+        Assertions.assertEquals(128, keys.length);
+        Assertions.assertEquals(game.positionKey(), keys[keys.length - 1]);
+
+        // Trying a move out and taking it back leaves the history as it was
+        game.applyMove(new ChessMove(ChessPosition.of(1, 7), ChessPosition.of(3, 6), null));
+        game.undoMove();
+        Assertions.assertArrayEquals(keys, game.positionHistory());
+        ChessGame loaded = new Gson().fromJson(new Gson().toJson(game), ChessGame.class);
+        Assertions.assertArrayEquals(keys, loaded.positionHistory());
+        Assertions.assertEquals(game.repetitionCount(), loaded.repetitionCount());
+    }
+
+    @Test
+    public void testGameSavedWithoutHistoryStartsFromItsPosition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        game.makeMove(new ChessMove(ChessPosition.of(7, 5), ChessPosition.of(5, 5), null));
+        JsonObject json = new Gson().toJsonTree(game).getAsJsonObject();
+        json.remove("history");
+        ChessGame loaded = new Gson().fromJson(json, ChessGame.class);
+        Assertions.assertArrayEquals(new long[]{game.positionKey()}, loaded.positionHistory());
+
+        // The old fixed-size ring does not end with the position, so it is dropped too
+        JsonArray ring = new JsonArray();
+        for (int i = 0; i < 128; i++) {
+            ring.add(i == 0 ? new ChessGame().positionKey() : 0);
+        }
+        json.add("history", ring);
+        json.addProperty("historyHead", 0);
+        json.addProperty("historyCount", 1);
+        loaded = new Gson().fromJson(json, ChessGame.class);
+        Assertions.assertArrayEquals(new long[]{game.positionKey()}, loaded.positionHistory());
+        shuffleKnights(loaded);
+        shuffleKnights(loaded);
+        Assertions.assertEquals(GameStatus.State.THREEFOLD_REPETITION, loaded.getGameStatus().state());
+    }
+
+    @Test
+    public void testHalfmoveClock() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        shuffleKnights(game);
+        Assertions.assertEquals(4, game.getHalfmoveClock());
+
+        game.applyMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        Assertions.assertEquals(0, game.getHalfmoveClock());
+        game.undoMove();
+        Assertions.assertEquals(4, game.getHalfmoveClock());
+        Assertions.assertEquals(2, game.repetitionCount());
+    }
+
+    @Test
+    public void testInsufficientMaterial() {
+        Assertions.assertEquals(GameStatus.State.INSUFFICIENT_MATERIAL,
+                Fen.parse("8/8/4k3/8/8/2B5/4K3/8 w - - 0 1").getGameStatus().state());
+        Assertions.assertEquals(GameStatus.State.INSUFFICIENT_MATERIAL,
+                Fen.parse("8/8/4k3/2b5/8/2B5/4K3/8 w - - 0 1").getGameStatus().state());
+        Assertions.assertEquals(GameStatus.State.ONGOING,
+                Fen.parse("8/8/4k3/3b4/8/2B5/4K3/8 w - - 0 1").getGameStatus().state());
+        Assertions.assertEquals(GameStatus.State.ONGOING,
+                Fen.parse("8/8/4k3/8/8/2N5/4KN2/8 w - - 0 1").getGameStatus().state());
+        Assertions.assertEquals(GameStatus.State.ONGOING,
+                Fen.parse("8/8/4k3/8/8/8/4KP2/8 w - - 0 1").getGameStatus().state());
+    }
+
+    private void shuffleKnights(ChessGame game) throws InvalidMoveException {
+        game.makeMove(new ChessMove(ChessPosition.of(1, 7), ChessPosition.of(3, 6), null));
+        game.makeMove(new ChessMove(ChessPosition.of(8, 7), ChessPosition.of(6, 6), null));
+        game.makeMove(new ChessMove(ChessPosition.of(3, 6), ChessPosition.of(1, 7), null));
+        game.makeMove(new ChessMove(ChessPosition.of(6, 6), ChessPosition.of(8, 7), null));
+    }
+}
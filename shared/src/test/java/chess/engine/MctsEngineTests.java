@@ -0,0 +1,93 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.Fen;
+import chess.InvalidMoveException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class MctsEngineTests {
+
+    private static MctsEngine singleWorker() {
+        return new MctsEngine(ForkJoinPool.commonPool(), 1);
+    }
+
+    @Test
+    public void testFindsMateInOne() {
+        ChessGame game = Fen.parse("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        SearchResult result = singleWorker().search(game, SearchLimits.nodes(2000));
+        Assertions.assertEquals(new ChessMove(ChessPosition.of(1, 1), ChessPosition.of(8, 1), null), result.bestMove());
+        Assertions.assertEquals(1, Score.mateIn(result.score()));
+    }
+
+    @Test
+    public void testWinsHangingQueen() {
+        ChessGame game = Fen.parse("4k3/8/8/3q4/8/8/8/3RK3 w - - 0 1");
+        SearchResult result = singleWorker().search(game, SearchLimits.nodes(2000));
+        Assertions.assertEquals(new ChessMove(ChessPosition.of(1, 4), ChessPosition.of(5, 4), null), result.bestMove());
+        Assertions.assertTrue(result.score() > 300, result.toString());
+    }
+
+    @Test
+    public void testNoMoveWhenGameOver() {
+        SearchResult mated = singleWorker().search(Fen.parse("R5k1/5ppp/8/8/8/8/8/6K1 b - - 0 1"),
+                SearchLimits.nodes(100));
+        Assertions.assertNull(mated.bestMove());
+        Assertions.assertEquals(-Score.MATE, mated.score());
+        SearchResult stalemate = singleWorker().search(Fen.parse("k7/8/1Q6/8/8/8/8/7K b - - 0 1"),
+                SearchLimits.nodes(100));
+        Assertions.assertNull(stalemate.bestMove());
+        Assertions.assertEquals(Score.DRAW, stalemate.score());
+    }
+
+    @Test
+    public void testNodeBudgetAndReports() {
+        List<SearchResult> reports = new ArrayList<>();
+        SearchResult result = singleWorker().search(new ChessGame(), SearchLimits.nodes(3000), reports::add);
+        Assertions.assertEquals(3000, result.nodes());
+        Assertions.assertEquals(result, reports.get(reports.size() - 1));
+        Assertions.assertTrue(reports.size() > 1);
+        Assertions.assertEquals(result.bestMove(), result.principalVariation().get(0));
+    }
+
+    @Test
+    public void testSingleWorkerDeterministic() {
+        ChessGame game = Fen.parse("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3");
+        SearchResult first = singleWorker().search(game, SearchLimits.nodes(1500));
+        SearchResult second = singleWorker().search(game, SearchLimits.nodes(1500));
+        Assertions.assertEquals(first.principalVariation(), second.principalVariation());
+        Assertions.assertEquals(first.score(), second.score());
+    }
+
+    @Test
+    public void testReusesTreeInSameGame() throws InvalidMoveException {
+        MctsEngine engine = singleWorker();
+        ChessGame game = new ChessGame();
+        SearchResult first = engine.search(game, SearchLimits.nodes(4000));
+        game.makeMove(first.principalVariation().get(0));
+        game.makeMove(first.principalVariation().get(1));
+        long kept = engine.treeVisits();
+
+        engine.search(game, SearchLimits.nodes(100));
+        Assertions.assertTrue(engine.treeVisits() > 100, "kept " + kept + " now " + engine.treeVisits());
+
+        engine.search(Fen.parse("4k3/8/8/3q4/8/8/8/3RK3 w - - 0 1"), SearchLimits.nodes(100));
+        Assertions.assertEquals(99, engine.treeVisits());
+    }
+
+    @Test
+    public void testParallelWorkers() {
+        ChessGame game = Fen.parse("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        MctsEngine engine = new MctsEngine(new ForkJoinPool(3), 4);
+        SearchResult result = engine.search(game, SearchLimits.nodes(4000));
+        Assertions.assertEquals(new ChessMove(ChessPosition.of(1, 1), ChessPosition.of(8, 1), null), result.bestMove());
+        Assertions.assertEquals(4000, result.nodes());
+        Assertions.assertEquals(3999, engine.treeVisits());
+    }
+}
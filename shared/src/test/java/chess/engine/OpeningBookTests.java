@@ -0,0 +1,92 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.InvalidMoveException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+public class OpeningBookTests {
+
+    @TempDir
+    Path directory;
+
+    private OpeningBook build(String... lines) throws IOException, InvalidMoveException {
+        OpeningBook.Builder builder = new OpeningBook.Builder();
+        for (String line : lines) {
+            builder.addLine(line);
+        }
+        Path path = directory.resolve("book.bin");
+        builder.write(path);
+        return OpeningBook.open(path);
+    }
+
+    @Test
+    public void testBestMoveHasMostWeight() throws Exception {
+        OpeningBook book = build("e2e4 e7e5", "e2e4 c7c5", "d2d4 d7d5");
+        Assertions.assertEquals(5, book.size());
+
+        ChessGame game = new ChessGame();
+        Assertions.assertEquals(OpeningBook.parse("e2e4"),
+                book.probe(game, OpeningBook.Selection.BEST, new SplittableRandom(1)));
+        Assertions.assertEquals(2, book.moves(game).size());
+        Assertions.assertEquals(2, book.moves(game).getFirst().getValue());
+
+        game.makeMove(OpeningBook.parse("d2d4"));
+        Assertions.assertEquals(OpeningBook.parse("d7d5"),
+                book.probe(game, OpeningBook.Selection.BEST, new SplittableRandom(1)));
+        game.makeMove(OpeningBook.parse("d7d5"));
+        Assertions.assertNull(book.probe(game, OpeningBook.Selection.BEST, new SplittableRandom(1)));
+    }
+
+    @Test
+    public void testWeightedSelectionFollowsWeights() throws Exception {
+        OpeningBook book = build("e2e4", "e2e4", "e2e4", "d2d4");
+        ChessGame game = new ChessGame();
+        SplittableRandom random = new SplittableRandom(7);
+        int e4 = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (book.probe(game, OpeningBook.Selection.WEIGHTED, random).equals(OpeningBook.parse("e2e4"))) {e4++;}
+        }
+        Assertions.assertTrue(e4 > 650 && e4 < 850, "e2e4 picked " + e4 + " times");
+    }
+
+    @Test
+    public void testMoveEncoding() {
+        for (String move : new String[]{"a1h8", "h8a1", "e7e8q", "b2a1n", "g7g8r", "c2c1b"}) {
+            ChessMove decoded = OpeningBook.decode(OpeningBook.encode(OpeningBook.parse(move)));
+            Assertions.assertEquals(OpeningBook.parse(move), decoded);
+        }
+    }
+
+    @Test
+    public void testRejectsTruncatedFile() throws IOException {
+        Path path = directory.resolve("broken.bin");
+        Files.write(path, new byte[20]);
+        Assertions.assertThrows(IOException.class, () -> OpeningBook.open(path));
+    }
+
+    @Test
+    public void testBookEngineFallsBackToSearch() throws Exception {
+        OpeningBook book = build("e2e4 e7e5");
+        Engine engine = new BookEngine(book, new AlphaBetaEngine(), OpeningBook.Selection.BEST);
+
+        ChessGame game = new ChessGame();
+        SearchResult result = engine.search(game, SearchLimits.depth(2));
+        Assertions.assertEquals(OpeningBook.parse("e2e4"), result.bestMove());
+        Assertions.assertEquals(0, result.nodes());
+        Assertions.assertTrue(result.book());
+
+        game.makeMove(OpeningBook.parse("d2d4"));
+        result = engine.search(game, SearchLimits.depth(2));
+        Assertions.assertNotNull(result.bestMove());
+        Assertions.assertTrue(result.nodes() > 0);
+        Assertions.assertFalse(result.book());
+    }
+}
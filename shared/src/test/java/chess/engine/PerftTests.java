@@ -0,0 +1,54 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.Fen;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class PerftTests {
+
+    private static final int MAX_NODES = 500_000;
+
+    @Test
+    public void testReferencePositions() {
+        for (Perft.ReferencePosition position : Perft.REFERENCE_POSITIONS) {
+            ChessGame game = Fen.parse(position.fen());
+            for (int depth = 1; depth <= position.maxDepth(); depth++) {
+                long expected = position.nodes()[depth - 1];
+                if (expected > MAX_NODES) {break;}
+                Assertions.assertEquals(expected, Perft.run(game, depth).nodes(),
+                        position.name() + " depth " + depth);
+            }
+        }
+    }
+
+    @Test
+    public void testParallelMatchesSequential() {
+        ChessGame game = Fen.parse(Perft.REFERENCE_POSITIONS.get(3).fen());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Assertions.assertEquals(Perft.run(game, 3).nodes(), Perft.runParallel(game, 3, pool).nodes());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testBoardLeftUnchanged() {
+        ChessGame game = new ChessGame();
+        long key = game.positionKey();
+        Perft.count(game.getBoard(), game.getTeamTurn(), 3);
+        Assertions.assertEquals(key, game.positionKey());
+        Assertions.assertEquals(new ChessGame(), game);
+    }
+
+    @Test
+    public void testFenRoundTrip() {
+        for (Perft.ReferencePosition position : Perft.REFERENCE_POSITIONS) {
+            ChessGame game = Fen.parse(position.fen());
+            Assertions.assertEquals(game, Fen.parse(Fen.toFen(game)), position.name());
+        }
+    }
+}
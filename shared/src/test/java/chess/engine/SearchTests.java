@@ -0,0 +1,158 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.Fen;
+import chess.Move;
+import chess.eval.TaperedEvaluator;
+import chess.tablebase.Tablebase;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SearchTests {
+
+    private final Engine engine = new AlphaBetaEngine();
+
+    @Test
+    public void testFindsMateInOne() {
+        ChessGame game = Fen.parse("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        SearchResult result = engine.search(game, SearchLimits.depth(4));
+        Assertions.assertEquals(new ChessMove(ChessPosition.of(1, 1), ChessPosition.of(8, 1), null), result.bestMove());
+        Assertions.assertEquals(1, Score.mateIn(result.score()));
+    }
+
+    @Test
+    public void testFindsMateInTwo() {
+        ChessGame game = Fen.parse("7k/8/8/8/8/8/8/RR4K1 w - - 0 1");
+        SearchResult result = engine.search(game, SearchLimits.depth(4));
+        Assertions.assertEquals(2, Score.mateIn(result.score()), result.toString());
+        Assertions.assertEquals(3, result.principalVariation().size());
+    }
+
+    @Test
+    public void testFullWidthFindsZugzwangMate() {
+        // After 1. Ra6 every black move allows mate, which null-move pruning cannot see
+        ChessGame game = Fen.parse("kbK5/pp6/1P6/8/8/8/8/R7 w - - 0 1");
+        Engine plain = new AlphaBetaEngine(new TranspositionTable(1), TaperedEvaluator::new, SearchConfig.NONE);
+        SearchResult result = plain.search(game, SearchLimits.depth(4));
+        Assertions.assertEquals(2, Score.mateIn(result.score()), result.toString());
+        Assertions.assertEquals(new ChessMove(ChessPosition.of(1, 1), ChessPosition.of(6, 1), null), result.bestMove());
+    }
+
+    @Test
+    public void testPruningSearchesFewerNodes() {
+        ChessGame game = Fen.parse(Bench.POSITIONS.get(1));
+        Engine plain = new AlphaBetaEngine(new TranspositionTable(1), TaperedEvaluator::new, SearchConfig.NONE);
+        long full = plain.search(game, SearchLimits.depth(5)).nodes();
+        long pruned = new AlphaBetaEngine().search(game, SearchLimits.depth(5)).nodes();
+        Assertions.assertTrue(pruned < full, pruned + " vs " + full);
+    }
+
+    @Test
+    public void testWinsHangingQueen() {
+        ChessGame game = Fen.parse("4k3/8/8/3q4/8/8/3R4/3K4 w - - 0 1");
+        SearchResult result = engine.search(game, SearchLimits.depth(3));
+        Assertions.assertEquals(new ChessMove(ChessPosition.of(2, 4), ChessPosition.of(5, 4), null), result.bestMove());
+    }
+
+    @Test
+    public void testNoMoveWhenGameOver() {
+        ChessGame game = Fen.parse("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1");
+        SearchResult result = engine.search(game, SearchLimits.depth(3));
+        Assertions.assertNull(result.bestMove());
+        Assertions.assertEquals(Score.DRAW, result.score());
+    }
+
+    @Test
+    public void testIterationsReported() {
+        List<SearchResult> iterations = new ArrayList<>();
+        ChessGame game = new ChessGame();
+        String before = Fen.toFen(game);
+        SearchResult result = engine.search(game, SearchLimits.depth(4), iterations::add);
+        Assertions.assertEquals(4, iterations.size());
+        Assertions.assertEquals(result, iterations.get(3));
+        Assertions.assertEquals(before, Fen.toFen(game));
+        Assertions.assertTrue(game.validMoves(result.bestMove().getStartPosition()).contains(result.bestMove()));
+    }
+
+    @Test
+    public void testNodeLimit() {
+        SearchResult result = engine.search(new ChessGame(), SearchLimits.nodes(20_000));
+        Assertions.assertNotNull(result.bestMove());
+        Assertions.assertTrue(result.nodes() < 40_000, result.toString());
+    }
+
+    @Test
+    public void testSingleThreadDeterministic() {
+        ChessGame game = Fen.parse(Perft.REFERENCE_POSITIONS.get(3).fen());
+        try (LazySmpEngine first = new LazySmpEngine(1); LazySmpEngine second = new LazySmpEngine(1)) {
+            SearchResult expected = first.search(game, SearchLimits.depth(4));
+            SearchResult actual = second.search(game, SearchLimits.depth(4));
+            Assertions.assertEquals(expected.principalVariation(), actual.principalVariation());
+            Assertions.assertEquals(expected.score(), actual.score());
+            Assertions.assertEquals(expected.nodes(), actual.nodes());
+        }
+    }
+
+    @Test
+    public void testHelperThreads() {
+        ChessGame game = Fen.parse("7k/8/8/8/8/8/8/RR4K1 w - - 0 1");
+        try (LazySmpEngine smp = new LazySmpEngine(4)) {
+            SearchResult result = smp.search(game, SearchLimits.depth(6));
+            Assertions.assertEquals(2, Score.mateIn(result.score()), result.toString());
+            Assertions.assertNotNull(smp.search(new ChessGame(), SearchLimits.nodes(50_000)).bestMove());
+        }
+    }
+
+    @Test
+    public void testHelperSkipPatterns() {
+        Assertions.assertEquals(List.of(1, 2, 3, 4, 5, 6), searchedDepths(0, 0));
+        Assertions.assertEquals(List.of(2, 4, 6), searchedDepths(1, 0));
+        Assertions.assertEquals(List.of(1, 3, 5), searchedDepths(1, 1));
+        Assertions.assertEquals(List.of(1, 4, 5), searchedDepths(2, 0));
+        Assertions.assertEquals(List.of(3, 4), searchedDepths(2, 1));
+
+        try (LazySmpEngine smp = new LazySmpEngine(4)) {
+            ChessGame game = new ChessGame();
+            SearchResult result = smp.search(game, SearchLimits.depth(6));
+            Assertions.assertEquals(6, result.depth());
+            Assertions.assertTrue(game.allLegalMoves(ChessGame.TeamColor.WHITE).contains(result.bestMove()));
+        }
+    }
+
+    private static List<Integer> searchedDepths(int skipSize, int skipPhase) {
+        Searcher searcher = new Searcher(new ChessGame(), SearchLimits.depth(6), new TranspositionTable(1),
+                new TaperedEvaluator(), SearchConfig.DEFAULT, Tablebase.NONE, new AtomicBoolean(), new AtomicLong(),
+                false);
+        List<Integer> depths = new ArrayList<>();
+        searcher.run(skipSize, skipPhase, result -> depths.add(result.depth()));
+        return depths;
+    }
+
+    @Test
+    public void testStaticExchange() {
+        ChessGame defended = Fen.parse("4k3/8/2p5/3p4/8/5N2/8/4K3 w - - 0 1");
+        int knightTakesPawn = Move.of(defended.getBoard(),
+                new ChessMove(ChessPosition.of(3, 6), ChessPosition.of(5, 4), null));
+        Assertions.assertFalse(StaticExchange.atLeast(defended.getBoard(), knightTakesPawn, ChessGame.TeamColor.WHITE, 0));
+
+        ChessGame xray = Fen.parse("3rk3/8/8/3p4/8/8/3R4/3RK3 w - - 0 1");
+        int rookTakesPawn = Move.of(xray.getBoard(),
+                new ChessMove(ChessPosition.of(2, 4), ChessPosition.of(5, 4), null));
+        Assertions.assertTrue(StaticExchange.atLeast(xray.getBoard(), rookTakesPawn, ChessGame.TeamColor.WHITE, 100));
+        Assertions.assertFalse(StaticExchange.atLeast(xray.getBoard(), rookTakesPawn, ChessGame.TeamColor.WHITE, 101));
+    }
+
+    @Test
+    public void testQuiescenceSeesRecapture() {
+        ChessGame game = Fen.parse("4k3/8/2p5/3p4/8/5N2/8/4K3 w - - 0 1");
+        SearchResult result = engine.search(game, SearchLimits.depth(1));
+        Assertions.assertNotEquals(new ChessMove(ChessPosition.of(3, 6), ChessPosition.of(5, 4), null), result.bestMove());
+    }
+}
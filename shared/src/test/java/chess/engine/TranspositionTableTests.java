@@ -0,0 +1,47 @@
+package chess.engine;
+
+import chess.ChessPiece;
+import chess.Move;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TranspositionTableTests {
+
+    @Test
+    public void testStoreAndProbe() {
+        TranspositionTable table = new TranspositionTable(1);
+        int move = Move.encode(12, 28, ChessPiece.PieceType.PAWN, null, null);
+        table.store(0x1234_5678_9ABC_DEF0L, move, -250, 7, TranspositionTable.LOWER);
+
+        long entry = table.probe(0x1234_5678_9ABC_DEF0L);
+        Assertions.assertEquals(move, TranspositionTable.move(entry));
+        Assertions.assertEquals(-250, TranspositionTable.score(entry));
+        Assertions.assertEquals(7, TranspositionTable.depth(entry));
+        Assertions.assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+        Assertions.assertEquals(TranspositionTable.MISS, table.probe(0x1234_5678_9ABC_DEF1L));
+    }
+
+    @Test
+    public void testDeepEntryKept() {
+        TranspositionTable table = new TranspositionTable(1);
+        long deep = 42;
+        long shallow = 42 + (1L << 40);
+        long other = 42 + (2L << 40);
+        table.store(deep, Move.NONE, 10, 9, TranspositionTable.EXACT);
+        table.store(shallow, Move.NONE, 20, 2, TranspositionTable.EXACT);
+        table.store(other, Move.NONE, 30, 1, TranspositionTable.EXACT);
+
+        Assertions.assertEquals(9, TranspositionTable.depth(table.probe(deep)));
+        Assertions.assertEquals(TranspositionTable.MISS, table.probe(shallow));
+        Assertions.assertEquals(30, TranspositionTable.score(table.probe(other)));
+    }
+
+    @Test
+    public void testMateScoresRelativeToPly() {
+        int mateFromRoot = Score.MATE - 9;
+        int stored = TranspositionTable.toTable(mateFromRoot, 4);
+        Assertions.assertEquals(Score.MATE - 5, stored);
+        Assertions.assertEquals(Score.MATE - 7, TranspositionTable.fromTable(stored, 2));
+        Assertions.assertEquals(-120, TranspositionTable.fromTable(TranspositionTable.toTable(-120, 6), 3));
+    }
+}
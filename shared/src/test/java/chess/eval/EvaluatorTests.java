@@ -0,0 +1,71 @@
+package chess.eval;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.Fen;
+import chess.IntMoveList;
+import chess.MoveGenerator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class EvaluatorTests {
+
+    @Test
+    public void testStartPositionBalanced() {
+        ChessGame game = new ChessGame();
+        TaperedEvaluator evaluator = new TaperedEvaluator();
+        evaluator.reset(game.getBoard());
+        Assertions.assertEquals(0, evaluator.evaluate(game.getBoard(), ChessGame.TeamColor.WHITE));
+    }
+
+    @Test
+    public void testMirroredPositionsScoreTheSame() {
+        ChessBoard white = Fen.parse("4k3/8/8/8/3N4/8/1P6/4K2R w - - 0 1").getBoard();
+        ChessBoard black = Fen.parse("4k2r/1p6/8/3n4/8/8/8/4K3 b - - 0 1").getBoard();
+        TaperedEvaluator evaluator = new TaperedEvaluator();
+        evaluator.reset(white);
+        int score = evaluator.evaluate(white, ChessGame.TeamColor.WHITE);
+        Assertions.assertTrue(score > 0);
+        evaluator.reset(black);
+        Assertions.assertEquals(score, evaluator.evaluate(black, ChessGame.TeamColor.BLACK));
+    }
+
+    @Test
+    public void testIncrementalMatchesReset() {
+        Random random = new Random(17);
+        for (int game = 0; game < 50; game++) {
+            ChessBoard board = Fen.parse("n1n5/PPPk4/8/8/8/8/4Kppp/5N1N b - - 0 1").getBoard().deepCopy();
+            if (game % 2 == 0) {board = new ChessGame().getBoard().deepCopy();}
+            ChessGame.TeamColor side = game % 2 == 0 ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+            TaperedEvaluator incremental = new TaperedEvaluator();
+            TaperedEvaluator fresh = new TaperedEvaluator();
+            incremental.reset(board);
+            int start = incremental.evaluate(board, ChessGame.TeamColor.WHITE);
+
+            IntMoveList moves = new IntMoveList();
+            int[] played = new int[40];
+            ChessGame.TeamColor[] movers = new ChessGame.TeamColor[40];
+            int plies = 0;
+            for (; plies < played.length; plies++) {
+                moves.clear();
+                MoveGenerator.generateLegal(board, side, moves);
+                if (moves.isEmpty()) {break;}
+                played[plies] = moves.get(random.nextInt(moves.size()));
+                movers[plies] = side;
+                board.applyMove(played[plies]);
+                incremental.moveMade(board, played[plies], side);
+                fresh.reset(board);
+                Assertions.assertEquals(fresh.evaluate(board, side), incremental.evaluate(board, side));
+                side = side == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+            }
+            while (plies > 0) {
+                plies--;
+                board.undoMove();
+                incremental.moveUndone(board, played[plies], movers[plies]);
+            }
+            Assertions.assertEquals(start, incremental.evaluate(board, ChessGame.TeamColor.WHITE));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package chess.eval;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.Fen;
+import chess.IntMoveList;
+import chess.MoveGenerator;
+import chess.engine.AlphaBetaEngine;
+import chess.engine.SearchLimits;
+import chess.engine.SearchResult;
+import chess.engine.TranspositionTable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+public class NnueEvaluatorTests {
+
+    private static final Network NETWORK = Network.random(64, 3);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testIncrementalMatchesReset() {
+        Random random = new Random(5);
+        for (int game = 0; game < 20; game++) {
+            ChessBoard board = Fen.parse("n1n5/PPPk4/8/8/8/8/4Kppp/5N1N b - - 0 1").getBoard().deepCopy();
+            if (game % 2 == 0) {board = new ChessGame().getBoard().deepCopy();}
+            ChessGame.TeamColor side = game % 2 == 0 ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+            NnueEvaluator incremental = new NnueEvaluator(NETWORK);
+            NnueEvaluator fresh = new NnueEvaluator(NETWORK);
+            incremental.reset(board);
+            int start = incremental.evaluate(board, ChessGame.TeamColor.WHITE);
+
+            IntMoveList moves = new IntMoveList();
+            int[] played = new int[200];
+            ChessGame.TeamColor[] movers = new ChessGame.TeamColor[200];
+            int plies = 0;
+            for (; plies < played.length; plies++) {
+                moves.clear();
+                MoveGenerator.generateLegal(board, side, moves);
+                if (moves.isEmpty()) {break;}
+                played[plies] = moves.get(random.nextInt(moves.size()));
+                movers[plies] = side;
+                board.applyMove(played[plies]);
+                incremental.moveMade(board, played[plies], side);
+                fresh.reset(board);
+                Assertions.assertEquals(fresh.evaluate(board, side), incremental.evaluate(board, side));
+                side = side == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+            }
+            while (plies > 0) {
+                plies--;
+                board.undoMove();
+                incremental.moveUndone(board, played[plies], movers[plies]);
+            }
+            Assertions.assertEquals(start, incremental.evaluate(board, ChessGame.TeamColor.WHITE));
+        }
+    }
+
+    @Test
+    public void testVectorMatchesScalar() {
+        NnueEvaluator vector = new NnueEvaluator(NETWORK);
+        Assertions.assertTrue(vector.isVectorized());
+        NnueEvaluator scalar = new NnueEvaluator(NETWORK, new ScalarKernel());
+        for (String fen : new String[]{Fen.START, "r1bq1rk1/pp2ppbp/2np1np1/8/3NP3/2N1BP2/PPPQ2PP/R3KB1R w - - 0 1",
+                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"}) {
+            ChessBoard board = Fen.parse(fen).getBoard();
+            vector.reset(board);
+            scalar.reset(board);
+            for (ChessGame.TeamColor side : ChessGame.TeamColor.values()) {
+                Assertions.assertEquals(scalar.evaluate(board, side), vector.evaluate(board, side));
+            }
+        }
+    }
+
+    @Test
+    public void testMirroredPositionsScoreTheSame() {
+        ChessBoard white = Fen.parse("4k3/8/8/8/3N4/8/1P6/4K2R w - - 0 1").getBoard();
+        ChessBoard black = Fen.parse("4k2r/1p6/8/3n4/8/8/8/4K3 b - - 0 1").getBoard();
+        NnueEvaluator evaluator = new NnueEvaluator(NETWORK);
+        evaluator.reset(white);
+        int score = evaluator.evaluate(white, ChessGame.TeamColor.WHITE);
+        evaluator.reset(black);
+        Assertions.assertEquals(score, evaluator.evaluate(black, ChessGame.TeamColor.BLACK));
+    }
+
+    @Test
+    public void testWeightsRoundTrip() throws IOException {
+        Path path = directory.resolve("net.bin");
+        NETWORK.write(path);
+        Network loaded = Network.load(path);
+        ChessBoard board = Fen.parse("r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10")
+                .getBoard();
+        NnueEvaluator original = new NnueEvaluator(NETWORK);
+        NnueEvaluator copy = new NnueEvaluator(loaded);
+        original.reset(board);
+        copy.reset(board);
+        Assertions.assertEquals(original.evaluate(board, ChessGame.TeamColor.WHITE),
+                copy.evaluate(board, ChessGame.TeamColor.WHITE));
+
+        Files.write(path, new byte[100]);
+        Assertions.assertThrows(IOException.class, () -> Network.load(path));
+    }
+
+    @Test
+    public void testSearchesWithNetwork() {
+        ChessGame game = Fen.parse("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        AlphaBetaEngine engine = new AlphaBetaEngine(new TranspositionTable(1), () -> new NnueEvaluator(NETWORK));
+        SearchResult result = engine.search(game, SearchLimits.depth(4));
+        Assertions.assertEquals(new ChessMove(ChessPosition.of(1, 1), ChessPosition.of(8, 1), null), result.bestMove());
+    }
+}
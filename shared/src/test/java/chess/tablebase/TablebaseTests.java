@@ -0,0 +1,94 @@
+package chess.tablebase;
+
+import chess.ChessGame;
+import chess.Fen;
+import chess.engine.AlphaBetaEngine;
+import chess.engine.Engine;
+import chess.engine.Score;
+import chess.engine.SearchConfig;
+import chess.engine.SearchLimits;
+import chess.engine.SearchResult;
+import chess.engine.TranspositionTable;
+import chess.eval.TaperedEvaluator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class TablebaseTests {
+
+    @TempDir
+    static Path directory;
+
+    private static final TablebaseGenerator GENERATOR = new TablebaseGenerator();
+    private static Tablebase tablebase;
+
+    @BeforeAll
+    public static void generate() throws IOException {
+        for (Ending ending : new Ending[]{Ending.KQK, Ending.KRK, Ending.KPK}) {
+            GENERATOR.write(directory, ending);
+        }
+        tablebase = Tablebase.open(directory);
+    }
+
+    private static int longestWin(Ending ending) {
+        byte[] table = GENERATOR.generate(ending);
+        int longest = 0;
+        for (int index = Ending.STRONG; index < table.length; index += 2) {
+            longest = Math.max(longest, (table[index] & 0xFF) - 1);
+        }
+        return longest;
+    }
+
+    @Test
+    public void testLongestMates() {
+        Assertions.assertEquals(19, longestWin(Ending.KQK));
+        Assertions.assertEquals(31, longestWin(Ending.KRK));
+    }
+
+    @Test
+    public void testMateInOneEitherColor() {
+        ChessGame white = Fen.parse("k7/8/1K6/8/8/8/8/6Q1 w - - 0 1");
+        Assertions.assertEquals(Score.MATE - 1, tablebase.probe(white));
+        ChessGame black = Fen.parse("6q1/8/8/8/8/1k6/8/K7 b - - 0 1");
+        Assertions.assertEquals(Score.MATE - 1, tablebase.probe(black));
+        ChessGame mated = Fen.parse("k5Q1/8/1K6/8/8/8/8/8 b - - 0 1");
+        Assertions.assertEquals(-Score.MATE, tablebase.probe(mated));
+    }
+
+    @Test
+    public void testPawnEndings() {
+        Assertions.assertEquals(Score.DRAW, tablebase.probe(Fen.parse("k7/8/8/8/8/8/P7/K7 w - - 0 1")));
+        Assertions.assertEquals(Score.DRAW, tablebase.probe(Fen.parse("8/8/8/8/8/4k3/4P3/4K3 b - - 0 1")));
+        Assertions.assertTrue(Score.isMate(tablebase.probe(Fen.parse("4k3/8/4K3/4P3/8/8/8/8 w - - 0 1"))));
+    }
+
+    @Test
+    public void testUnknownMaterial() {
+        Assertions.assertEquals(Tablebase.UNKNOWN, tablebase.probe(new ChessGame()));
+        Assertions.assertFalse(tablebase.contains(Ending.KBNK));
+        Assertions.assertEquals(Tablebase.UNKNOWN,
+                tablebase.probe(Fen.parse("4k3/8/8/8/8/8/8/2BNK3 w - - 0 1")));
+    }
+
+    @Test
+    public void testRejectsForeignFile() throws IOException {
+        Path other = Files.createDirectories(directory.resolve("broken"));
+        Files.write(other.resolve(Ending.KQK.fileName()), new byte[64]);
+        Assertions.assertThrows(IOException.class, () -> Tablebase.open(other));
+    }
+
+    @Test
+    public void testSearchScoresEndingExactly() {
+        ChessGame game = Fen.parse("8/8/1K6/8/8/8/6k1/7R w - - 0 1");
+        Engine engine = new AlphaBetaEngine(new TranspositionTable(1), TaperedEvaluator::new, SearchConfig.DEFAULT,
+                tablebase);
+        SearchResult result = engine.search(game, SearchLimits.depth(2));
+        Assertions.assertEquals(tablebase.probe(game), result.score());
+        Assertions.assertTrue(result.nodes() < 200, "searched " + result.nodes());
+    }
+}